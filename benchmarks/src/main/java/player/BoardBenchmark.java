@@ -0,0 +1,136 @@
+/* BoardBenchmark.java */
+
+package player;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *  Benchmarks of the Board queries the search makes at every node, and of the
+ *  static evaluations.  One operation is a pass over every corpus position of
+ *  the chosen phase, each queried for the side to move.
+ *
+ *  maxPathLength, and evaluateBoard through it, answer repeated positions from
+ *  the board's memo, so after the first pass they measure memo hits; the
+ *  longestPath benchmark times the walk itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BoardBenchmark {
+
+    @Param({CorpusPosition.OPENING, CorpusPosition.MIDGAME, CorpusPosition.STEP})
+    public String phase;
+
+    private Board[] boards;
+    private int[] colors;
+    private MachinePlayer[] players;  // for evaluateBoard, which scores from the player's side
+    private Move[][] candidates;      // moves to test with isValidMove, legal or not
+
+    @Setup
+    public void setUp() {
+        List<CorpusPosition> positions = CorpusPosition.load(phase);
+        int n = positions.size();
+        boards = new Board[n];
+        colors = new int[n];
+        players = new MachinePlayer[n];
+        candidates = new Move[n][];
+        for (int i = 0; i < n; i++) {
+            CorpusPosition p = positions.get(i);
+            boards[i] = p.board();
+            colors[i] = p.toMove();
+            players[i] = p.player(1);
+            candidates[i] = candidates(boards[i], colors[i]);
+        }
+    }
+
+    // Every ADD to every square while the player still has chips to add; otherwise
+    // every STEP of one of the player's chips to every square.
+    private static Move[] candidates(Board board, int color) {
+        List<Move> list = new ArrayList<Move>();
+        boolean adding = board.validMoves(color).getFirst().moveKind == Move.ADD;
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                if (adding) {
+                    list.add(new Move(x, y));
+                } else if (board.getSquare(x, y) == color) {
+                    for (int x1 = 0; x1 < 8; x1++) {
+                        for (int y1 = 0; y1 < 8; y1++) {
+                            list.add(new Move(x1, y1, x, y));
+                        }
+                    }
+                }
+            }
+        }
+        return list.toArray(new Move[list.size()]);
+    }
+
+    @Benchmark
+    public void validMoves(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            bh.consume(boards[i].validMoves(colors[i]));
+        }
+    }
+
+    @Benchmark
+    public void generateMoves(Blackhole bh) {
+        int[] buffer = new int[Board.MAX_MOVES];
+        for (int i = 0; i < boards.length; i++) {
+            bh.consume(boards[i].generateMoves(colors[i], buffer));
+        }
+    }
+
+    @Benchmark
+    public void hasNetwork(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            bh.consume(boards[i].hasNetwork(colors[i]));
+        }
+    }
+
+    @Benchmark
+    public void maxPathLength(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            bh.consume(boards[i].maxPathLength(colors[i]));
+        }
+    }
+
+    @Benchmark
+    public void longestPath(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            bh.consume(boards[i].longestPath(colors[i]));
+        }
+    }
+
+    @Benchmark
+    public void isValidMove(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            Board board = boards[i];
+            int color = colors[i];
+            Move[] moves = candidates[i];
+            for (int j = 0; j < moves.length; j++) {
+                bh.consume(board.isValidMove(moves[j], color));
+            }
+        }
+    }
+
+    @Benchmark
+    public void evaluateBoard(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            bh.consume(players[i].evaluateBoard(boards[i]));
+        }
+    }
+
+    @Benchmark
+    public void patternEvaluation(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            bh.consume(PatternEvaluator.evaluate(boards[i], colors[i]));
+        }
+    }
+
+}
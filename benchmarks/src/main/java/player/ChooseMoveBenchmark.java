@@ -0,0 +1,52 @@
+/* ChooseMoveBenchmark.java */
+
+package player;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *  Benchmarks a whole chooseMove at a fixed search depth.  Every invocation
+ *  gets a new MachinePlayer, replayed to the next corpus position of the chosen
+ *  phase, so no search starts from a table or move-ordering statistics left by
+ *  an earlier one.  The positions are taken in turn, so one iteration averages
+ *  over the whole phase.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChooseMoveBenchmark {
+
+    @Param({CorpusPosition.OPENING, CorpusPosition.MIDGAME, CorpusPosition.STEP})
+    public String phase;
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int depth;
+
+    private List<CorpusPosition> positions;
+    private int next;
+    private MachinePlayer player;
+
+    @Setup(Level.Trial)
+    public void load() {
+        positions = CorpusPosition.load(phase);
+        next = 0;
+    }
+
+    @Setup(Level.Invocation)
+    public void replay() {
+        player = positions.get(next).player(depth);
+        next = (next + 1) % positions.size();
+    }
+
+    @Benchmark
+    public Move chooseMove() {
+        return player.chooseMove();
+    }
+
+}
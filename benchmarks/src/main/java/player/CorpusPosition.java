@@ -0,0 +1,120 @@
+/* CorpusPosition.java */
+
+package player;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ *  A position of the benchmark corpus, reached from the empty board by a list
+ *  of moves.  The corpus is read from positions.txt next to this class; see
+ *  that file for the format.
+ */
+public class CorpusPosition {
+
+    public static final String OPENING = "opening";
+    public static final String MIDGAME = "midgame";
+    public static final String STEP = "step";
+
+    private final String phase;
+    private final List<Move> moves;
+
+    private CorpusPosition(String phase, List<Move> moves) {
+        this.phase = phase;
+        this.moves = moves;
+    }
+
+    /**
+     *  Reads every position of one phase.
+     *  @param phase OPENING, MIDGAME or STEP.
+     *  @return the positions in file order.
+     */
+    public static List<CorpusPosition> load(String phase) {
+        List<CorpusPosition> list = new ArrayList<CorpusPosition>();
+        InputStream in = CorpusPosition.class.getResourceAsStream("positions.txt");
+        if (in == null) {
+            throw new IllegalStateException("positions.txt is missing");
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.length() == 0 || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split("\\s+");
+                    if (!fields[0].equals(phase)) {
+                        continue;
+                    }
+                    List<Move> moves = new ArrayList<Move>();
+                    for (int i = 1; i < fields.length; i++) {
+                        moves.add(parseMove(fields[i]));
+                    }
+                    list.add(new CorpusPosition(phase, moves));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot read positions.txt", e);
+        }
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException("no positions for phase " + phase);
+        }
+        return list;
+    }
+
+    // "34" is an ADD to x = 3, y = 4; "21-34" a STEP from 21 to 34, read as the engine
+    // protocol reads them (see PackedMove.parse)
+    private static Move parseMove(String s) {
+        int move = PackedMove.parse(s);
+        if (move == PackedMove.NONE) {
+            throw new IllegalArgumentException("bad move " + s);
+        }
+        return PackedMove.toMove(move);
+    }
+
+    public String phase() {
+        return phase;
+    }
+
+    /** @return the color whose turn it is. White moves first. */
+    public int toMove() {
+        return (moves.size() % 2 == 0) ? Board.WHITE : Board.BLACK;
+    }
+
+    /** @return a new board holding the position. */
+    public Board board() {
+        Board board = new Board();
+        int color = Board.WHITE;
+        for (Move m : moves) {
+            if (!board.isValidMove(m, color)) {
+                throw new IllegalStateException("illegal move " + m + " in the corpus");
+            }
+            board.makeMove(m, color);
+            color = 1 - color;
+        }
+        return board;
+    }
+
+    /**
+     *  Creates a player for the side to move and replays the position into it
+     *  through forceMove and opponentMove, as the referee would.
+     *  @param searchDepth the player's search depth.
+     */
+    public MachinePlayer player(int searchDepth) {
+        MachinePlayer player = new MachinePlayer(toMove(), searchDepth);
+        int color = Board.WHITE;
+        for (Move m : moves) {
+            boolean ok = (color == player.color) ? player.forceMove(m) : player.opponentMove(m);
+            if (!ok) {
+                throw new IllegalStateException("illegal move " + m + " in the corpus");
+            }
+            color = 1 - color;
+        }
+        return player;
+    }
+
+}
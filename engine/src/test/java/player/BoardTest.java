@@ -0,0 +1,233 @@
+/* BoardTest.java */
+
+package player;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import org.junit.Test;
+
+/**
+ *  Checks Board's bitboard machinery (the connection graph kept by makeMove and
+ *  withdrawMove, the network and longest-path walks and the symmetry-canonical
+ *  keys) against plain implementations of the rules that only read getSquare.
+ */
+public class BoardTest {
+
+    private static final int GAMES = 300;
+
+    // Plays a random game of up to maxPlies moves, withdrawing and replacing one move in
+    // four, and hands every position reached to the visitor.
+    private interface Visitor {
+        void visit(Board b, int ply);
+    }
+
+    private static void playRandomGames(long seed, int maxPlies, Visitor visitor) {
+        Random random = new Random(seed);
+        int[] buffer = new int[Board.MAX_MOVES];
+        for (int g = 0; g < GAMES; g++) {
+            Board b = new Board();
+            int color = Board.WHITE;
+            for (int ply = 0; ply < maxPlies; ply++) {
+                if (b.hasNetwork(Board.WHITE) || b.hasNetwork(Board.BLACK)) {
+                    break;
+                }
+                int count = b.generateMoves(color, buffer);
+                if (count == 0) {
+                    break;
+                }
+                int move = buffer[random.nextInt(count)];
+                b.makeMove(move, color);
+                if (random.nextInt(4) == 0) {
+                    b.withdrawMove(move, color);
+                    move = buffer[random.nextInt(count)];
+                    b.makeMove(move, color);
+                }
+                visitor.visit(b, ply);
+                color = 1 - color;
+            }
+        }
+    }
+
+    @Test
+    public void connectionsMatchRecompute() {
+        playRandomGames(5, 60, new Visitor() {
+            public void visit(Board b, int ply) {
+                Board copy = new Board(b);
+                for (int sq = 0; sq < 64; sq++) {
+                    long expected = referenceConnections(b, sq);
+                    assertEquals("connections of " + sq + " at ply " + ply, expected, b.connectionsOf(sq));
+                    assertEquals("copied connections of " + sq, expected, copy.connectionsOf(sq));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void networksMatchReference() {
+        playRandomGames(11, 60, new Visitor() {
+            public void visit(Board b, int ply) {
+                for (int color = Board.BLACK; color <= Board.WHITE; color++) {
+                    assertEquals("network of " + color + " at ply " + ply,
+                                 referenceNetwork(b, color), b.hasNetwork(color));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void longestPathsMatchReference() {
+        playRandomGames(13, 60, new Visitor() {
+            public void visit(Board b, int ply) {
+                for (int color = Board.BLACK; color <= Board.WHITE; color++) {
+                    int expected = referenceLongestPath(b, color);
+                    assertEquals("longest path of " + color + " at ply " + ply, expected, b.longestPath(color));
+                    assertEquals("memoized longest path", expected, b.maxPathLength(color));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void canonicalKeysAgreeAcrossSymmetries() {
+        Random random = new Random(7);
+        int[] buffer = new int[Board.MAX_MOVES];
+        for (int g = 0; g < GAMES; g++) {
+            Board b = new Board();
+            int plies = 1 + random.nextInt(30);
+            int[] moves = new int[plies];
+            int color = Board.WHITE;
+            int played = 0;
+            while (played < plies) {
+                int count = b.generateMoves(color, buffer);
+                if (count == 0) {
+                    break;
+                }
+                moves[played] = buffer[random.nextInt(count)];
+                b.makeMove(moves[played++], color);
+                color = 1 - color;
+            }
+            long key = b.canonicalKey(color);
+            for (int t = 0; t < Board.SYMMETRIES; t++) {
+                // replay the game mapped by t; symmetries 4 to 7 also swap the colors
+                Board image = new Board();
+                for (int i = 0; i < played; i++) {
+                    int mover = (i % 2 == 0) ? Board.WHITE : Board.BLACK;
+                    int move = Board.symmetricMove(moves[i], t);
+                    assertTrue("mapped move is legal", image.isValidMove(PackedMove.toMove(move), mover ^ (t >> 2)));
+                    image.makeMove(move, mover ^ (t >> 2));
+                    assertEquals("inverse symmetry", moves[i], Board.symmetricMove(move, Board.inverseSymmetry(t)));
+                }
+                int toMove = color ^ (t >> 2);
+                assertEquals("canonical key under symmetry " + t, key, image.canonicalKey(toMove));
+                int s = image.canonicalSymmetry(toMove);
+                assertEquals("canonical frame", key, hashOfImage(image, s, toMove));
+            }
+        }
+    }
+
+    // The plain hash key of the board mapped by symmetry t, with toMove mapped along.
+    private static long hashOfImage(Board b, int t, int toMove) {
+        Board image = new Board();
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                int square = b.getSquare(x, y);
+                if (square != Board.EMPTY) {
+                    int move = Board.symmetricMove(PackedMove.add(Board.square(x, y)), t);
+                    image.makeMove(move, square ^ (t >> 2));
+                }
+            }
+        }
+        return image.hashKey(toMove ^ (t >> 2));
+    }
+
+    // The chips connected to the chip on sq: the first chip in each of the eight directions,
+    // if it is of the same color.
+    private static long referenceConnections(Board b, int sq) {
+        int x = sq >>> 3;
+        int y = sq & 7;
+        int color = b.getSquare(x, y);
+        long connections = 0;
+        if (color == Board.EMPTY) {
+            return 0;
+        }
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                if (dx == 0 && dy == 0) {
+                    continue;
+                }
+                for (int i = x + dx, j = y + dy; i >= 0 && i < 8 && j >= 0 && j < 8; i += dx, j += dy) {
+                    int square = b.getSquare(i, j);
+                    if (square == color) {
+                        connections |= 1L << Board.square(i, j);
+                    }
+                    if (square != Board.EMPTY) {
+                        break;
+                    }
+                }
+            }
+        }
+        return connections;
+    }
+
+    private static boolean inGoal(int color, int x, int y, boolean start) {
+        if (color == Board.WHITE) {
+            return (start ? x == 0 : x == 7) && y >= 1 && y <= 6;
+        }
+        return (start ? y == 0 : y == 7) && x >= 1 && x <= 6;
+    }
+
+    private static boolean referenceNetwork(Board b, int color) {
+        return referenceWalk(b, color, true) >= 6;
+    }
+
+    private static int referenceLongestPath(Board b, int color) {
+        return referenceWalk(b, color, false);
+    }
+
+    // The longest path from the first goal area; with toGoal, only paths that reach the
+    // other goal area count.
+    private static int referenceWalk(Board b, int color, boolean toGoal) {
+        int best = 0;
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                if (b.getSquare(x, y) == color && inGoal(color, x, y, true)) {
+                    boolean[] visited = new boolean[64];
+                    visited[Board.square(x, y)] = true;
+                    best = Math.max(best, referenceWalk(b, color, toGoal, Board.square(x, y), -1, 1, visited));
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int referenceWalk(Board b, int color, boolean toGoal, int sq, int lastDirection, int length,
+                                     boolean[] visited) {
+        int best = toGoal ? 0 : length;
+        for (long c = referenceConnections(b, sq); c != 0; c &= c - 1) {
+            int next = Long.numberOfTrailingZeros(c);
+            int nx = next >>> 3;
+            int ny = next & 7;
+            int direction = direction(sq, next);
+            if (direction == lastDirection || visited[next] || inGoal(color, nx, ny, true)) {
+                continue;  // no straight line through a chip, no chip twice, no second start chip
+            }
+            if (inGoal(color, nx, ny, false)) {
+                best = Math.max(best, length + 1);
+                continue;
+            }
+            visited[next] = true;
+            best = Math.max(best, referenceWalk(b, color, toGoal, next, direction, length + 1, visited));
+            visited[next] = false;
+        }
+        return best;
+    }
+
+    // the direction from a to b, as a number 0 to 8 of no particular meaning
+    private static int direction(int a, int b) {
+        int dx = Integer.signum((b >>> 3) - (a >>> 3));
+        int dy = Integer.signum((b & 7) - (a & 7));
+        return (dx + 1) * 3 + (dy + 1);
+    }
+
+}
@@ -0,0 +1,77 @@
+/* GameRecordTest.java */
+
+package player;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *  Writes random games with GameRecordWriter and reads them back with
+ *  GameRecordReader.
+ */
+public class GameRecordTest {
+
+    private static final int GAMES = 2000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void gamesReadBackAsWritten() throws IOException {
+        Random random = new Random(5);
+        File file = folder.newFile("games.bin");
+        List<int[]> games = new ArrayList<int[]>();
+        int[] winners = new int[GAMES];
+        int[] buffer = new int[Board.MAX_MOVES];
+        GameRecordWriter writer = new GameRecordWriter(file, false);
+        try {
+            for (int g = 0; g < GAMES; g++) {
+                Board b = new Board();
+                int[] moves = new int[random.nextInt(80)];
+                int color = Board.WHITE;
+                int plies = 0;
+                while (plies < moves.length) {
+                    int count = b.generateMoves(color, buffer);
+                    if (count == 0) {
+                        break;
+                    }
+                    moves[plies] = buffer[random.nextInt(count)];
+                    b.makeMove(moves[plies++], color);
+                    color = 1 - color;
+                }
+                games.add(Arrays.copyOf(moves, plies));
+                winners[g] = random.nextInt(3);  // BLACK, WHITE or DRAW
+                writer.write(winners[g], moves, plies, g & 0xFFFF, 7);
+            }
+        } finally {
+            writer.close();
+        }
+
+        GameRecordReader reader = new GameRecordReader(file);
+        try {
+            int[] moves = new int[GameRecordReader.MAX_PLIES];
+            for (int g = 0; g < GAMES; g++) {
+                assertTrue("game " + g + " is there", reader.next());
+                assertEquals("winner of game " + g, winners[g], reader.winner());
+                assertEquals("white player of game " + g, g & 0xFFFF, reader.whitePlayer());
+                assertEquals("black player of game " + g, 7, reader.blackPlayer());
+                assertEquals("plies of game " + g, games.get(g).length, reader.plies());
+                int plies = reader.moves(moves);
+                assertArrayEquals("moves of game " + g, games.get(g), Arrays.copyOf(moves, plies));
+                for (int i = 0; i < plies; i++) {
+                    assertEquals("move " + i + " of game " + g, games.get(g)[i], reader.move(i));
+                }
+            }
+            assertFalse("no game after the last", reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/* ParallelRootSearchTest.java */
+
+package player;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *  Checks that the root split chooses the move a single thread chooses at the
+ *  same depth, as MachinePlayer.setParallelMode promises.
+ */
+public class ParallelRootSearchTest {
+
+    private static final int POSITIONS = 16;
+    private static final int DEPTH = 3;
+
+    @Test
+    public void rootSplitChoosesTheSingleThreadedMove() {
+        Random random = new Random(3);
+        int[] buffer = new int[Board.MAX_MOVES];
+        MachinePlayer single = new MachinePlayer(Board.WHITE, DEPTH);
+        MachinePlayer split = new MachinePlayer(Board.WHITE, DEPTH);
+        single.setOpeningBook(null);
+        split.setOpeningBook(null);
+        split.setThreads(3);
+        split.setParallelMode(MachinePlayer.ROOT_SPLIT);
+        try {
+            int searched = 0;
+            while (searched < POSITIONS) {
+                Board b = new Board();
+                int color = Board.WHITE;
+                int plies = random.nextInt(30);
+                for (int ply = 0; ply < plies && !b.hasNetwork(Board.WHITE) && !b.hasNetwork(Board.BLACK); ply++) {
+                    b.makeMove(buffer[random.nextInt(b.generateMoves(color, buffer))], color);
+                    color = 1 - color;
+                }
+                if (b.hasNetwork(Board.WHITE) || b.hasNetwork(Board.BLACK)) {
+                    continue;
+                }
+                single.setPosition(b, color);
+                split.setPosition(b, color);
+                Move expected = single.chooseMove();
+                Move actual = split.chooseMove();
+                assertEquals("move after " + plies + " plies", expected.toString(), actual.toString());
+                assertEquals("score after " + plies + " plies", single.searchStats().score(), split.searchStats().score());
+                searched++;
+            }
+        } finally {
+            split.setThreads(1);  // shuts down the pool
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/* PatternEvaluatorTest.java */
+
+package player;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *  Searches with the pattern evaluation while Board checks its running scores
+ *  against PatternEvaluator.score after every move and withdrawal.  The build
+ *  sets the player.checkEvaluation property for the tests; a score kept wrong
+ *  makes the search throw IllegalStateException.
+ */
+public class PatternEvaluatorTest {
+
+    private static final int POSITIONS = 12;
+
+    @Test
+    public void runningScoresMatchRecomputeDuringSearch() {
+        assertTrue("tests must run with -D" + Board.CHECK_EVALUATION_PROPERTY + "=true",
+                   Boolean.getBoolean(Board.CHECK_EVALUATION_PROPERTY));
+        Random random = new Random(17);
+        int[] buffer = new int[Board.MAX_MOVES];
+        MachinePlayer single = new MachinePlayer(Board.WHITE, 3);
+        MachinePlayer split = new MachinePlayer(Board.WHITE, 3);
+        for (MachinePlayer player : new MachinePlayer[] { single, split }) {
+            player.setOpeningBook(null);
+            player.setEvaluation(MachinePlayer.PATTERN_EVALUATION);
+        }
+        split.setThreads(2);
+        try {
+            int searched = 0;
+            while (searched < POSITIONS) {
+                Board b = new Board();
+                int color = Board.WHITE;
+                int plies = random.nextInt(40);  // into the STEP moves too
+                for (int ply = 0; ply < plies && !b.hasNetwork(Board.WHITE) && !b.hasNetwork(Board.BLACK); ply++) {
+                    b.makeMove(buffer[random.nextInt(b.generateMoves(color, buffer))], color);
+                    color = 1 - color;
+                }
+                if (b.hasNetwork(Board.WHITE) || b.hasNetwork(Board.BLACK)) {
+                    continue;
+                }
+                single.setPosition(b, color);
+                split.setPosition(b, color);
+                assertNotNull(single.chooseMove());
+                assertNotNull(split.chooseMove());
+                searched++;
+            }
+        } finally {
+            split.setThreads(1);  // shuts down the pool
+        }
+    }
+
+    @Test
+    public void evaluateMatchesRecompute() {
+        Random random = new Random(19);
+        int[] buffer = new int[Board.MAX_MOVES];
+        for (int g = 0; g < 200; g++) {
+            Board b = new Board();
+            int color = Board.WHITE;
+            for (int ply = 0; ply < 40 && !b.hasNetwork(Board.WHITE) && !b.hasNetwork(Board.BLACK); ply++) {
+                b.patternScore(Board.WHITE);  // keeps the scores from the start
+                b.makeMove(buffer[random.nextInt(b.generateMoves(color, buffer))], color);
+                color = 1 - color;
+                Board fresh = new Board();
+                for (int x = 0; x < 8; x++) {
+                    for (int y = 0; y < 8; y++) {
+                        if (b.getSquare(x, y) != Board.EMPTY) {
+                            fresh.makeMove(PackedMove.add(Board.square(x, y)), b.getSquare(x, y));
+                        }
+                    }
+                }
+                assertEquals("white's score", PatternEvaluator.score(b, Board.WHITE), b.patternScore(Board.WHITE));
+                assertEquals("black's score", PatternEvaluator.score(b, Board.BLACK), b.patternScore(Board.BLACK));
+                assertEquals("evaluation", PatternEvaluator.evaluate(fresh, Board.WHITE),
+                             PatternEvaluator.evaluate(b, Board.WHITE));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/* Analyzer.java */
+
+package player;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ *  Finds the best move and its score for every position of a file, on a pool of
+ *  worker threads.  Positions are read as the workers need them and each result
+ *  is written as soon as it and every result before it are done, so the output
+ *  follows the order of the input and grows while the analysis runs.  At most
+ *  4 * threads positions are in memory at once, however long the file is.
+ *
+ *  Input: one position per line, in Position's notation.  Blank lines and lines
+ *  starting with # are copied to the output unchanged.
+ *  Output: one line per position, the position followed by
+ *    bestmove MOVE score S depth D nodes N
+ *  with MOVE and S written as Engine writes them ("bestmove none" if the game is
+ *  over), or by "error MESSAGE" if the line is not a legal position or its
+ *  search failed; the other positions are analyzed all the same.
+ *
+ *  Every worker thread keeps one MachinePlayer and sets it up afresh for each
+ *  position (see MachinePlayer.setPosition), so the results do not depend on
+ *  which worker analyzed what.
+ *
+ *  Usage: java player.Analyzer [options] input|- [output]
+ *  Options:
+ *    -depth N       search depth (default 3)
+ *    -movetime MS   time per position instead of a fixed depth
+ *    -nodes N       nodes per position instead of a fixed depth
+ *    -threads N     worker threads (default: one per core)
+ *    -player SET    further settings of the players, as for Tournament; the
+ *                   opening book is off unless book=true is given
+ */
+public class Analyzer {
+
+    // positions in memory per worker thread: enough to keep every worker busy while
+    // the oldest result holds up the output
+    private static final int POSITIONS_PER_THREAD = 4;
+
+    private final Tournament.Entrant settings;
+    private final int depth;
+    private final long time;
+    private final long nodes;
+    private final int threads;
+
+    // the MachinePlayer of each worker thread
+    private final ThreadLocal<MachinePlayer> players = new ThreadLocal<MachinePlayer>() {
+        protected MachinePlayer initialValue() {
+            return settings.newPlayer(Board.WHITE);
+        }
+    };
+
+    /**
+     *  @param settings the players' settings.
+     *  @param depth the search depth, used when time and nodes are 0.
+     *  @param time milliseconds per position, 0 for none.
+     *  @param nodes nodes per position, 0 for none.
+     *  @param threads worker threads.
+     */
+    public Analyzer(Tournament.Entrant settings, int depth, long time, long nodes, int threads) {
+        this.settings = settings;
+        this.depth = depth;
+        this.time = time;
+        this.nodes = nodes;
+        this.threads = threads;
+    }
+
+    /** Analyzes every position of the input and writes the results to the output. */
+    public void run(BufferedReader in, Writer out) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ArrayDeque<ForkJoinTask<String>> pending = new ArrayDeque<ForkJoinTask<String>>();
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String text = line;
+                pending.add(pool.submit(new Callable<String>() {
+                    public String call() {
+                        return analyze(text);
+                    }
+                }));
+                if (pending.size() >= POSITIONS_PER_THREAD * threads) {
+                    write(pending, out);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending, out);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Waits for the oldest result and writes it, flushing unless the next is ready too.
+    private static void write(ArrayDeque<ForkJoinTask<String>> pending, Writer out) throws IOException {
+        out.write(pending.poll().join());
+        out.write('\n');
+        if (pending.isEmpty() || !pending.peek().isDone()) {
+            out.flush();
+        }
+    }
+
+    /** Analyzes one line of input and returns its line of output. */
+    String analyze(String line) {
+        String text = line.trim();
+        if (text.isEmpty() || text.startsWith("#")) {
+            return line;
+        }
+        Position position;
+        try {
+            position = Position.parse(text);
+        } catch (IllegalArgumentException e) {
+            return text + " error " + e.getMessage();
+        }
+        Board board = position.board;
+        int color = position.toMove;
+        if (board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)
+            || board.generateMoves(color, new int[Board.MAX_MOVES]) == 0) {
+            return text + " bestmove none";
+        }
+        try {
+            MachinePlayer player = players.get();
+            player.setPosition(board, color);
+            player.setSearchDepth(depth);
+            player.setTimeBudget(time);
+            player.setNodeBudget(nodes);
+            Move best = player.chooseMove();
+            SearchStats stats = player.searchStats();
+            return text + " bestmove " + PackedMove.format(PackedMove.fromMove(best))
+                + " score " + Engine.score(stats.score()) + " depth " + stats.depth() + " nodes " + stats.nodes();
+        } catch (RuntimeException e) {
+            // a failure in one position is that position's result; the next starts afresh
+            MachinePlayer player = players.get();
+            player.setPondering(false);  // stops its background threads, as Tournament does
+            player.setThreads(1);
+            players.remove();
+            return text + " error " + e;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String settings = "";
+        int depth = 3;
+        long time = 0;
+        long nodes = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String input = null;
+        String output = null;
+        Analyzer analyzer = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-depth") && i + 1 < args.length) {
+                    depth = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-movetime") && i + 1 < args.length) {
+                    time = Long.parseLong(args[++i]);
+                } else if (args[i].equals("-nodes") && i + 1 < args.length) {
+                    nodes = Long.parseLong(args[++i]);
+                } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-player") && i + 1 < args.length) {
+                    settings = args[++i];
+                } else if (args[i].startsWith("-") && !args[i].equals("-")) {
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+                } else if (input == null) {
+                    input = args[i];
+                } else if (output == null) {
+                    output = args[i];
+                } else {
+                    throw new IllegalArgumentException("too many files");
+                }
+            }
+            if (input == null) {
+                throw new IllegalArgumentException("no input file");
+            }
+            if (threads < 1 || depth < 1) {
+                throw new IllegalArgumentException("threads and depth must be at least 1");
+            }
+            analyzer = new Analyzer(new Tournament.Entrant("book=false," + settings), depth, time, nodes, threads);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: java player.Analyzer [-depth N] [-movetime MS] [-nodes N] [-threads N] "
+                               + "[-player SETTINGS] input|- [output]");
+            System.exit(2);
+        }
+
+        BufferedReader in = new BufferedReader(input.equals("-") ? new InputStreamReader(System.in)
+                                                                  : new FileReader(input));
+        Writer out = new BufferedWriter((output == null) ? new OutputStreamWriter(System.out) : new FileWriter(output));
+        try {
+            analyzer.run(in, out);
+        } finally {
+            in.close();
+            out.close();
+        }
+        System.exit(0);  // pool threads of the players may still be alive
+    }
+
+}
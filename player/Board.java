@@ -7,9 +7,11 @@ import java.util.*;
  * A class that is extended by all Network players (human and machine). 
  * This is the player's internal representation of the board. 
  * This representation of the board is intended for the Game Tree Search Module to get and set contents on the board.  
+ *
+ * The position is kept as one 64-bit mask per color. Square (x, y) maps to bit x * 8 + y, so
+ * walking the bits of a mask from low to high visits the board column by column, the same
+ * order the old array scans used.
  */
-
-//Constructor for Board class - constructs an 8 by 8 2D array
  
 public class Board {
     //square
@@ -17,6 +19,9 @@ public class Board {
     public static final int BLACK = 0;
     public static final int WHITE = 1;
 
+    // no position has more valid moves than this: 10 chips times 48 squares to step to
+    public static final int MAX_MOVES = 480;
+
     //Directions
     private static final int UP_DIRECTION = 0;
     private static final int UP_RIGHT_DIRECTION = 1;
@@ -27,19 +32,161 @@ public class Board {
     private static final int LEFT_DIRECTION = 6;
     private static final int UP_LEFT_DIRECTION = 7;
 
-    private int[][] gameBoard = new int[8][8];
+    // x and y offsets of one step in each direction, indexed by the direction constants above
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    private static final long CORNERS = bit(0, 0) | bit(0, 7) | bit(7, 0) | bit(7, 7);
+
+    // GOAL_START[color] is the row or column at 0, GOAL_END[color] the one at 7
+    private static final long[] GOAL_START = new long[2];
+    private static final long[] GOAL_END = new long[2];
+    // squares a color may never occupy: the corners and the opponent's goal areas
+    private static final long[] FORBIDDEN = new long[2];
+
+    private static final long[] NEIGHBORS = new long[64];
+    // RAYS[d][sq] holds every square strictly beyond sq in direction d
+    private static final long[][] RAYS = new long[8][64];
+
+    // DIRECTION_BETWEEN[a * 64 + b] is the direction from square a to square b, or -1 if
+    // the two squares do not share a row, column or diagonal
+    private static final byte[] DIRECTION_BETWEEN = new byte[64 * 64];
+
+    // ZOBRIST[color][sq] is XORed into the hash while a chip of that color sits on sq
+    private static final long[][] ZOBRIST = new long[2][64];
+    // XORed into hashKey when white is the side to move
+    private static final long WHITE_TO_MOVE;
+
+    /**
+     * The symmetries of the game. Symmetry t mirrors x to 7 - x if bit 0 of t is set, then
+     * mirrors y to 7 - y if bit 1 is set, then, if bit 2 is set, swaps x with y and black with
+     * white. Each maps every position onto one that plays exactly the same, goal areas and
+     * all, for the same side once the colors are swapped back. Symmetry 0 is the identity.
+     */
+    public static final int SYMMETRIES = 8;
+    // SYMMETRIC_SQUARE[t * 64 + sq] is the square sq is mapped to by symmetry t
+    private static final byte[] SYMMETRIC_SQUARE = new byte[SYMMETRIES * 64];
+    // INVERSE_SYMMETRY[t] undoes symmetry t
+    private static final int[] INVERSE_SYMMETRY = new int[SYMMETRIES];
+    // SYMMETRIC_ZOBRIST[(t * 2 + color) * 64 + sq] is the ZOBRIST entry of the chip a chip of
+    // that color on sq becomes under symmetry t
+    private static final long[] SYMMETRIC_ZOBRIST = new long[SYMMETRIES * 2 * 64];
+
+    static {
+        for (int i = 1; i < 7; i++) {
+            GOAL_START[BLACK] |= bit(i, 0);
+            GOAL_END[BLACK] |= bit(i, 7);
+            GOAL_START[WHITE] |= bit(0, i);
+            GOAL_END[WHITE] |= bit(7, i);
+        }
+        FORBIDDEN[BLACK] = CORNERS | GOAL_START[WHITE] | GOAL_END[WHITE];
+        FORBIDDEN[WHITE] = CORNERS | GOAL_START[BLACK] | GOAL_END[BLACK];
+
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                int sq = square(x, y);
+                for (int d = 0; d < 8; d++) {
+                    int i = x + DX[d];
+                    int j = y + DY[d];
+                    if (onBoard(i, j)) {
+                        NEIGHBORS[sq] |= bit(i, j);
+                    }
+                    while (onBoard(i, j)) {
+                        RAYS[d][sq] |= bit(i, j);
+                        i += DX[d];
+                        j += DY[d];
+                    }
+                }
+            }
+        }
+
+        java.util.Arrays.fill(DIRECTION_BETWEEN, (byte) -1);
+        for (int d = 0; d < 8; d++) {
+            for (int sq = 0; sq < 64; sq++) {
+                for (long r = RAYS[d][sq]; r != 0; r &= r - 1) {
+                    DIRECTION_BETWEEN[(sq << 6) | Long.numberOfTrailingZeros(r)] = (byte) d;
+                }
+            }
+        }
+
+        // a fixed seed keeps hashes stable from one run to the next
+        Random random = new Random(0x4E6574776F726BL);
+        for (int sq = 0; sq < 64; sq++) {
+            ZOBRIST[BLACK][sq] = random.nextLong();
+            ZOBRIST[WHITE][sq] = random.nextLong();
+        }
+        WHITE_TO_MOVE = random.nextLong();
+
+        for (int t = 0; t < SYMMETRIES; t++) {
+            for (int x = 0; x < 8; x++) {
+                for (int y = 0; y < 8; y++) {
+                    int i = ((t & 1) != 0) ? 7 - x : x;
+                    int j = ((t & 2) != 0) ? 7 - y : y;
+                    int to = ((t & 4) != 0) ? square(j, i) : square(i, j);
+                    SYMMETRIC_SQUARE[(t << 6) | square(x, y)] = (byte) to;
+                    for (int color = BLACK; color <= WHITE; color++) {
+                        SYMMETRIC_ZOBRIST[(((t << 1) | color) << 6) | square(x, y)] = ZOBRIST[symmetricColor(color, t)][to];
+                    }
+                }
+            }
+        }
+        for (int t = 0; t < SYMMETRIES; t++) {
+            for (int u = 0; u < SYMMETRIES; u++) {
+                if (SYMMETRIC_SQUARE[(u << 6) | SYMMETRIC_SQUARE[(t << 6) | square(1, 2)]] == square(1, 2)
+                    && SYMMETRIC_SQUARE[(u << 6) | SYMMETRIC_SQUARE[(t << 6) | square(2, 4)]] == square(2, 4)) {
+                    INVERSE_SYMMETRY[t] = u;  // two squares off every axis of symmetry pin u down
+                }
+            }
+        }
+    }
+
+    // chips[BLACK] and chips[WHITE] hold one bit per occupied square
+    private final long[] chips = new long[2];
+    // Zobrist hash of the board mapped by each symmetry, kept up to date by makeMove and
+    // withdrawMove; symmetricHashes[0] is the hash of the board itself
+    private final long[] symmetricHashes = new long[SYMMETRIES];
+    // links[sq] holds the chips connected to the chip on sq (always of the same color), 0 if sq
+    // is empty. makeMove and withdrawMove keep it up to date by re-examining the four lines
+    // through each square that changes.
+    private final long[] links = new long[64];
     private int whitePiecesLeft = 10;
     private int blackPiecesLeft = 10;
 
+    // longest-path memo of maxPathLength, allocated on first use
+    private static final int PATH_CACHE_BITS = 12;
+    // connections maxPathLength may examine in one call
+    private static final int MAX_PATH_STEPS = 4096;
+    private long[] pathCacheKeys;
+    private byte[] pathCacheLengths;  // length + 1, so 0 marks an empty slot
+
+    // scratch stacks of the network searches, one entry per chip on the path
+    private final int[] pathSquares = new int[10];
+    private final int[] pathDirections = new int[10];
+    private final long[] pathPending = new long[10];
+
+    // calls of hasNetwork on this board, read by the search for its SearchStats
+    long networkChecks;
+
+    // PatternEvaluator's score of each color, kept up to date by makeMove and withdrawMove
+    // once patternScore has been called; both arrays stay null until then, so boards scored
+    // another way pay nothing for them. The trial moves of the network searches set shapes to
+    // null while they are on the board, since they are always taken back.
+    private int[] patternScores;
+    // shapes[sq] is the PatternEvaluator shape index of the chip on sq: bit d is set when it
+    // is connected in direction d, bit 8 when sq lies in a goal area of its color
+    private short[] shapes;
+
+    /**
+     * System property that, set to true, makes every makeMove and withdrawMove check the
+     * running pattern scores against a full recompute (see PatternEvaluator.score).
+     */
+    public static final String CHECK_EVALUATION_PROPERTY = "player.checkEvaluation";
+    private static final boolean CHECK_EVALUATION = Boolean.getBoolean(CHECK_EVALUATION_PROPERTY);
+
     /**
      * Constructs a Board object, setting each spot on the board to EMPTY initially
      */
     public Board() {
-		for (int x = 0; x<8; x++) {
-			for (int y =0; y<8; y++) {
-				gameBoard[x][y] = EMPTY;
-			}
-		}
 	}
      
     /** This constructor duplicates a board.
@@ -47,471 +194,856 @@ public class Board {
     * @param b is the current Board we are duplicating.
     */
     public Board (Board b){
-        for (int x = 0; x<8; x++) {
-            for (int y =0; y<8; y++) {
-                this.gameBoard[x][y] = b.gameBoard[x][y];
-            }      
+        copy(b);
+    }
+
+    /**
+     * Makes this board a duplicate of another, reusing its own arrays, so that a board kept
+     * for searching can be reset to each new position without allocating.
+     * @param b the board to duplicate; not changed
+     */
+    void copy(Board b) {
+        this.chips[BLACK] = b.chips[BLACK];
+        this.chips[WHITE] = b.chips[WHITE];
+        System.arraycopy(b.symmetricHashes, 0, this.symmetricHashes, 0, SYMMETRIES);
+        System.arraycopy(b.links, 0, this.links, 0, 64);
+        if (b.shapes == null) {
+            this.shapes = null;
+            this.patternScores = null;
+        } else if (this.shapes == null) {
+            this.shapes = b.shapes.clone();
+            this.patternScores = b.patternScores.clone();
+        } else {
+            System.arraycopy(b.shapes, 0, this.shapes, 0, 64);
+            System.arraycopy(b.patternScores, 0, this.patternScores, 0, 2);
         }
         this.whitePiecesLeft = b.whitePiecesLeft;
         this.blackPiecesLeft = b.blackPiecesLeft;
     }
 
-/**This method's purpose is to return if a coordinate is a corner on the board. 
- * It uses the static final constants declared in this class. 
-     @param x - The x coordinate of the position. 
-     @param y - The y coordinate of the position.
-     @return true is the position is on a corner, false otherwise
-      */
-     
-    private boolean isCorner(int x, int y){
-        if (x == 0 && y == 7) return true;
-        if (x == 0 && y == 0) return true;
-        if (x == 7 && y == 7) return true;
-        if (x == 7 && y == 0) return true;
-        return false;
+    /**
+     * Creates a board holding the given chips, each checked as if it had been added by an
+     * ADD move: on a square its color may use, and without making a cluster. Each color has
+     * as many chips left to add as it lacks of ten.
+     * @param black the squares of the black chips, one bit per square as in square(x, y)
+     * @param white the squares of the white chips
+     * @throws IllegalArgumentException if the chips overlap, a color has more than ten or a
+     * chip breaks one of the rules
+     */
+    static Board withChips(long black, long white) {
+        if ((black & white) != 0 || Long.bitCount(black) > 10 || Long.bitCount(white) > 10) {
+            throw new IllegalArgumentException("not a position: overlapping chips or more than ten of a color");
+        }
+        Board b = new Board();
+        for (int color = BLACK; color <= WHITE; color++) {
+            for (long m = (color == BLACK) ? black : white; m != 0; m &= m - 1) {
+                int sq = Long.numberOfTrailingZeros(m);
+                if ((FORBIDDEN[color] & (1L << sq)) != 0 || b.isClustered(sq, -1, color)) {
+                    throw new IllegalArgumentException("not a position: chip on " + (sq >>> 3) + (sq & 7)
+                                                       + " breaks the rules");
+                }
+                b.placeChip(sq, color);
+            }
+        }
+        b.blackPiecesLeft = 10 - Long.bitCount(black);
+        b.whitePiecesLeft = 10 - Long.bitCount(white);
+        return b;
     }
 
-    /**This method finds the neighbors of a coordinate. It returns the coordinate positions. 
-    * @param x - The x coordinate of the position. 
-    * @param y - The y coordinate of the posistion. 
-    * @return an int array containing the positions of each neighbor
-    */
-    private int[][] neighbors(int x, int y){
-        int[][] n = {
-            {x,y+1}, 
-            {x,y-1}, 
-            {x+1,y+1}, 
-            {x+1,y-1}, 
-            {x+1,y},
-            {x-1,y},
-            {x-1,y-1},
-            {x-1,y+1}
-        };
-        return n;
+    /** Returns the bit index of square (x, y). */
+    static int square(int x, int y) {
+        return (x << 3) | y;
     }
- 
+
+    /** Returns the mask with only square (x, y) set. */
+    static long bit(int x, int y) {
+        return 1L << square(x, y);
+    }
+
+    /**
+     * Returns the Zobrist hash of this position with the given color to move.
+     * Two boards holding the same chips give the same key no matter which order
+     * the chips were placed in, so the key identifies transposed positions.
+     * @param toMove the color of the player whose turn it is
+     * @return a 64-bit key for the position
+     */
+    protected long hashKey(int toMove) {
+        long hash = symmetricHashes[0];
+        return (toMove == WHITE) ? hash ^ WHITE_TO_MOVE : hash;
+    }
+
+    /**
+     * Returns a key shared by this position and every position a symmetry maps it to
+     * (see SYMMETRIES): the lowest of their Zobrist keys. The hashes of all eight images
+     * are kept up to date by makeMove and withdrawMove, so this costs eight XORs and
+     * compares. Symmetries that swap the colors also swap the side to move.
+     * @param toMove the color of the player whose turn it is
+     * @return the canonical key; hashKey of the position canonicalSymmetry maps this one to
+     */
+    protected long canonicalKey(int toMove) {
+        long key = Long.MAX_VALUE;
+        for (int t = 0; t < SYMMETRIES; t++) {
+            key = Math.min(key, symmetricKey(t, toMove));
+        }
+        return key;
+    }
+
+    /**
+     * Returns the symmetry that maps this position to its canonical frame, the image whose
+     * key canonicalKey returns. When several images share that key the lowest one is taken.
+     * @param toMove the color of the player whose turn it is
+     * @return a symmetry, 0 to SYMMETRIES - 1
+     */
+    protected int canonicalSymmetry(int toMove) {
+        int best = 0;
+        long key = symmetricKey(0, toMove);
+        for (int t = 1; t < SYMMETRIES; t++) {
+            long k = symmetricKey(t, toMove);
+            if (k < key) {
+                key = k;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    private long symmetricKey(int t, int toMove) {
+        long h = symmetricHashes[t];
+        return (symmetricColor(toMove, t) == WHITE) ? h ^ WHITE_TO_MOVE : h;
+    }
+
+    /**
+     * Maps a packed move (see PackedMove) by a symmetry. A move into the canonical frame
+     * uses canonicalSymmetry; inverseSymmetry of it maps the move back.
+     * @param move the move, PackedMove.NONE stays NONE
+     * @param t the symmetry
+     * @return the move with its squares mapped
+     */
+    public static int symmetricMove(int move, int t) {
+        if (move == PackedMove.NONE) {
+            return move;
+        }
+        int to = SYMMETRIC_SQUARE[(t << 6) | PackedMove.to(move)];
+        if (PackedMove.kind(move) == Move.ADD) {
+            return PackedMove.add(to);
+        }
+        return PackedMove.step(SYMMETRIC_SQUARE[(t << 6) | PackedMove.from(move)], to);
+    }
+
+    // maps a color by a symmetry: symmetries 4 to 7 swap black and white
+    private static int symmetricColor(int color, int t) {
+        return color ^ (t >> 2);
+    }
+
+    /** Returns the symmetry that undoes symmetry t. */
+    public static int inverseSymmetry(int t) {
+        return INVERSE_SYMMETRY[t];
+    }
+
+    private static boolean onBoard(int x, int y) {
+        return x >= 0 && x <= 7 && y >= 0 && y <= 7;
+    }
+
     /**
-    * Determines whether the move with create a cluster if a chip is moved there
-    * @param m the Move being considered 
+    * Determines whether the move with create a cluster if a chip is moved there.
+    * A cluster exists when the new square touches two chips of the same color, or touches
+    * one chip that already has a neighbor of that color.
+    * @param to the square the chip lands on
+    * @param from the square a stepping chip leaves, or -1 for an ADD
     * @param color the color of the chip being placed
     * @return true if a cluster is created, false otherwise
     */
-    private boolean isClustered(Move m, int color){
-        int count = 0;
-        int[][] n = neighbors(m.x1, m.y1); // 以x1，y1为中点找周围8个neighbor  这里是在落下这个chip之前检查是否有两个的cluster
-        if (m.moveKind == Move.ADD){
-            for (int i = 0; i< 8; i++) { // 遍历外围一圈的8个neighbor
-                if (getSquare(n[i][0], n[i][1]) == color) {  // 发现一个挨着的同色chip，还要再检查这个chip的neighbor
-                    count++;
-                    int[][] othersNeighbors = neighbors(n[i][0], n[i][1]);
-                    for (int k = 0; k< 8; k++){
-                        if (getSquare(othersNeighbors[k][0], othersNeighbors[k][1]) == color){
-                            return true; // 一旦发现有二级neighbor就说明必然是cluster
-                        }
-                    }
-                }   
-            }
-            if (count > 1) return true;  // 只要大于1，肯定是clustered
+    private boolean isClustered(int to, int from, int color){
+        long own = chips[color];
+        if (from >= 0) {
+            own &= ~(1L << from);  // the chip leaves its old square before landing
         }
-        else if (m.moveKind == Move.STEP){
-            gameBoard[m.x2][m.y2] = EMPTY;  // 假设先移走起始位置的chip，原来的位置变成empty
-            Move addMove = new Move(m.x1, m.y1);  // 移动到新的位置
-            boolean result = isClustered(addMove, color);  
-            gameBoard[m.x2][m.y2] = color; // 因为这里只是为了用来判断结果，所以最后还要恢复原来位置的color
-            return result;
+        long adjacent = NEIGHBORS[to] & own;
+        if (adjacent == 0) {
+            return false;
         }
-        return false;		
+        if ((adjacent & (adjacent - 1)) != 0) {  // two or more neighbors
+            return true;
+        }
+        return (NEIGHBORS[Long.numberOfTrailingZeros(adjacent)] & own) != 0;
     }
  
  
  
     /** hasNetwork returns true if this board has a network with 6 or greater length. It otherwise 
-    *returns false. It takes in a player because it is called on the board. It calls a recursive, private function travel
-     that repeatedly 
-    *@param player the player whose network is being determined
+    * returns false. A network starts on a chip in one goal area of the player, ends on a chip in the
+    * other, uses no chip twice, touches no other goal chip on the way and changes direction at every chip.
+    * The search is a depth-first walk over connection masks. The path, the connections still to try
+    * at each step and the incoming directions live in preallocated arrays, and the visited set is a
+    * 64-bit mask, so the call allocates nothing.
+    *@param playerColor the player whose network is being determined
     *@return true if this board has a network with 6 or greater length or false otherwise
     * 
    */
 
     protected boolean hasNetwork (int playerColor) {
-        if (playerColor == WHITE) {
-            if (this.whitePiecesLeft > 4 || !inGoalArea(playerColor)) {  // 如果还没有6个以上的chip，或者goalarea还没有chip
-                return false;
-            }
+        networkChecks++;
+        int chipsLeft = (playerColor == WHITE) ? whitePiecesLeft : blackPiecesLeft;
+        if (chipsLeft > 4 || !inGoalArea(playerColor)) {  // 如果还没有6个以上的chip，或者goalarea还没有chip
+            return false;
         }
-        if (playerColor == BLACK) {
-            if (this.blackPiecesLeft > 4 || !inGoalArea(playerColor)) {
-                return false;
+        long startGoal = GOAL_START[playerColor];
+        long endGoal = GOAL_END[playerColor];
+        // 一个path必定是以startgoal作起始点的，所以尝试遍历每个startgoal里的chip
+        for (long s = chips[playerColor] & startGoal; s != 0; s &= s - 1) {
+            int start = Long.numberOfTrailingZeros(s);
+            int depth = 0;
+            long visited = 1L << start;
+            pathSquares[0] = start;
+            pathDirections[0] = -1;  // 因为一开始没有方向，所以设为-1
+            pathPending[0] = links[start] & ~startGoal;
+            while (depth >= 0) {
+                long pending = pathPending[depth];
+                if (pending == 0) {  // every connection from this chip has been tried
+                    visited &= ~(1L << pathSquares[depth]);
+                    depth--;
+                    continue;
+                }
+                int next = Long.numberOfTrailingZeros(pending);
+                pathPending[depth] = pending & (pending - 1);
+                long nextBit = 1L << next;
+                int dir = DIRECTION_BETWEEN[(pathSquares[depth] << 6) | next];
+                if (dir == pathDirections[depth] || (visited & nextBit) != 0) {
+                    continue;  // 方向一致不能形成下一个connection, 同一个chip不能用两次
+                }
+                if ((endGoal & nextBit) != 0) {  // 说明已经到达终点goal area
+                    if (depth + 2 >= 6) {
+                        return true;
+                    }
+                    continue;
+                }
+                depth++;
+                pathSquares[depth] = next;
+                pathDirections[depth] = dir;
+                pathPending[depth] = links[next] & ~startGoal & ~visited;
+                visited |= nextBit;
             }
         }
-        LinkedList<Coordinate> startGoals = this.goalPieces(playerColor, 0); // 得到一边goal的chips链表
-        LinkedList<Coordinate> endGoals = this.goalPieces(playerColor, 7);  // 得到另一边goal的chips链表
-        ListIterator<Coordinate> it = startGoals.listIterator();
+        return false;
+    }
 
-        while (it.hasNext()){  // valid 表示 不是 null
-            Coordinate chip = it.next();
-            int[] startCoord = chip.getCoord();
-            LinkedList<Coordinate> connections = currentConnections(startCoord);  
-            LinkedList<Coordinate> visited = new LinkedList<Coordinate>();
-            int piecesUsed = 1; // start算一个
-            // 一个path必定是以startgoal作起始点的，所以尝试遍历每个startgoal里的chip
-            if (travel(startCoord, piecesUsed, endGoals, connections, visited, -1)){  // 因为一开始没有方向，所以设为-1
-                return true;  // 如果这个list满足network，那就返回true
-            }
+    /**
+     * Finds the longest path a color could build towards a network: a chain of connected chips
+     * starting in the color's first goal area, obeying the network rules (no chip twice, no other
+     * chip of that goal area, a change of direction at every chip) and ending either anywhere or
+     * on reaching the other goal area. Used to evaluate the score.
+     *
+     * Results are memoized per Board, keyed on the position hash. A call that misses the memo
+     * examines at most MAX_PATH_STEPS connections; in the rare position with more paths than that
+     * the longest one found within the budget is returned.
+     * @param color the color whose paths are measured
+     * @return the number of chips on the longest path, 0 if the first goal area is empty
+     */
+    public int maxPathLength(int color){
+        long key = hashKey(color);
+        if (pathCacheKeys == null) {
+            pathCacheKeys = new long[1 << PATH_CACHE_BITS];
+            pathCacheLengths = new byte[1 << PATH_CACHE_BITS];
         }
-        return false;
+        int slot = (int) key & ((1 << PATH_CACHE_BITS) - 1);
+        if (pathCacheLengths[slot] != 0 && pathCacheKeys[slot] == key) {
+            return pathCacheLengths[slot] - 1;
+        }
+        int length = longestPath(color);
+        pathCacheKeys[slot] = key;
+        pathCacheLengths[slot] = (byte) (length + 1);
+        return length;
     }
 
-    // check if the list contains the coord
-    public boolean listContains(LinkedList<Coordinate> list, int[] coord){
-        ListIterator<Coordinate> it = list.listIterator();
-        while(it.hasNext()){
-            Coordinate cur = it.next();
-            if(cur.equals(coord)) return true;
+    // The depth-first walk behind maxPathLength, on the same stacks hasNetwork uses.
+    // Package-private so that benchmarks can time it without the memo.
+    int longestPath(int color) {
+        long startGoal = GOAL_START[color];
+        long endGoal = GOAL_END[color];
+        int most = Long.bitCount(chips[color]);  // no path can be longer than this
+        int longest = 0;
+        int steps = 0;
+        for (long s = chips[color] & startGoal; s != 0; s &= s - 1) {
+            int start = Long.numberOfTrailingZeros(s);
+            int depth = 0;
+            long visited = 1L << start;
+            longest = Math.max(longest, 1);
+            pathSquares[0] = start;
+            pathDirections[0] = -1;
+            pathPending[0] = links[start] & ~startGoal;
+            while (depth >= 0) {
+                long pending = pathPending[depth];
+                if (pending == 0) {
+                    visited &= ~(1L << pathSquares[depth]);
+                    depth--;
+                    continue;
+                }
+                if (++steps > MAX_PATH_STEPS) {
+                    return longest;
+                }
+                int next = Long.numberOfTrailingZeros(pending);
+                pathPending[depth] = pending & (pending - 1);
+                long nextBit = 1L << next;
+                int dir = DIRECTION_BETWEEN[(pathSquares[depth] << 6) | next];
+                if (dir == pathDirections[depth] || (visited & nextBit) != 0) {
+                    continue;
+                }
+                longest = Math.max(longest, depth + 2);
+                if (longest == most) {
+                    return longest;
+                }
+                if ((endGoal & nextBit) != 0) {  // a path ends when it reaches the other goal area
+                    continue;
+                }
+                depth++;
+                pathSquares[depth] = next;
+                pathDirections[depth] = dir;
+                pathPending[depth] = links[next] & ~startGoal & ~visited;
+                visited |= nextBit;
+            }
         }
-        return false;
+        return longest;
     }
 
-    // DFS
 
-    // 要注意三点： 
-    // 1. 探索到9个以上就停止
-    // 2. 如果发现到了endgoal，检查是否满足6个以上的要求
-    // 3. 检查是否重复使用了同一个chip作path
-    private boolean travel(int[] startCoord, int piecesUsed, LinkedList<Coordinate> endGoals, LinkedList<Coordinate> connections, LinkedList<Coordinate> visited, int lastDirection){   // connections是startCoord周围可连接的chip 表示以startCoord为原点能够形成connections的chips的list
-        if (piecesUsed > 10){ // 最多10个算一个path
-            return false;
-        }
-        if (listContains(endGoals, startCoord)){ // 说明已经到达终点goal area
-            if (piecesUsed > 5){   // 如果最后是endgoals，那就要看这个path是否满足6个chip以上的要求
-                return true;
-            }else{
-                return false;
+
+    /**
+     * Lists the moves that win at once for a color: moves after which it has a network and
+     * its opponent has none. The position itself must not hold a network for the color.
+     *
+     * A move completes a network either through the chip it moves or, for a STEP, through a
+     * line the chip leaves open between two others. So a move is only played out and checked
+     * with hasNetwork if the moved chip lands in line of sight of a chip connected to the first
+     * goal area and of one connected to the other (or lands in a goal area itself), or if the
+     * chips left behind already form a network.
+     * @param color the color to move
+     * @param buffer receives the winning moves, packed as in PackedMove; null to stop at the
+     * first one
+     * @return the number of winning moves, at most 1 when buffer is null
+     */
+    protected int winningMoves(int color, int[] buffer) {
+        return completingMoves(color, buffer, true);
+    }
+
+    /**
+     * Lists the moves that complete a network for a color, whether or not they also complete
+     * one for its opponent (see winningMoves). The position must not hold a network for the color.
+     * @param color the color to move
+     * @param buffer receives the moves, packed as in PackedMove; null to stop at the first one
+     * @return the number of moves, at most 1 when buffer is null
+     */
+    protected int networkMoves(int color, int[] buffer) {
+        return completingMoves(color, buffer, false);
+    }
+
+    /**
+     * Drops from a list of moves of color every move after which the opponent still has a
+     * network or a winning move. The moves left keep their order.
+     *
+     * While both sides are adding chips a cheap test goes first: an ADD can only stop the
+     * opponent's threats by taking one of the squares they land on, or by standing between
+     * two chips that are, or would then be, connected. Other moves are played out.
+     * @param color the color whose moves are filtered
+     * @param moves the moves, packed as in PackedMove; the kept ones are moved to the front
+     * @param count the number of moves
+     * @param threats the opponent's moves listed by networkMoves
+     * @param threatCount the number of entries of threats
+     * @return the number of moves kept
+     */
+    protected int blockingMoves(int color, int[] moves, int count, int[] threats, int threatCount) {
+        int opponent = 1 - color;
+        long blockers = ~0L;  // squares where an ADD might stop a threat
+        if (((opponent == WHITE) ? whitePiecesLeft : blackPiecesLeft) > 0) {
+            long opponentChips = chips[opponent];
+            long occupied = chips[BLACK] | chips[WHITE];
+            blockers = 0;
+            for (long c = opponentChips; c != 0; c &= c - 1) {
+                int a = Long.numberOfTrailingZeros(c);
+                for (long l = links[a]; l != 0; l &= l - 1) {
+                    blockers |= between(a, Long.numberOfTrailingZeros(l));
+                }
+            }
+            for (int i = 0; i < threatCount; i++) {
+                int x = PackedMove.to(threats[i]);
+                blockers |= 1L << x;
+                for (int d = 0; d < 8; d++) {
+                    int c = firstChip(x, d, occupied);
+                    if (c >= 0 && (opponentChips & (1L << c)) != 0) {
+                        blockers |= between(x, c);
+                    }
+                }
             }
         }
-        if (listContains(visited, startCoord)){  // 如果visited path已经包含这个chip，就不可能形成path，同一个chip不能用两次
-            return false;
-        }
-        
-        ListIterator<Coordinate> it = connections.listIterator();
-        while (it.hasNext()){
-            Coordinate chip = it.next();
-            int[] coord = chip.getCoord();
-            int currentDirection = direction(startCoord, coord);
-            if (currentDirection == lastDirection){  // 比较上一个connection的方向，说明方向一致不能形成下一个connection，跳过
-                continue;
-            }
-            visited.add(new Coordinate(startCoord)); // 把这个chip尝试加入path，然后继续往下面search
-            if (travel(coord, piecesUsed + 1, endGoals, currentConnections(coord), visited, currentDirection)) {
-                return true;
-            } else{  // 如果search结果是false，那就说明这个chip不能找到network，再把它remove掉
-                visited.remove();         
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int m = moves[i];
+            if (PackedMove.kind(m) == Move.ADD && (blockers & (1L << PackedMove.to(m))) == 0) {
+                continue;  // changes nothing the opponent's threats rely on
+            }
+            if (!threatenedAfter(m, color, threats, threatCount)) {
+                moves[kept++] = m;
             }
         }
-        return false;
+        return kept;
     }
 
+    // the squares strictly between two squares on a common line
+    private static long between(int a, int b) {
+        int d = DIRECTION_BETWEEN[(a << 6) | b];
+        return RAYS[d][a] & ~RAYS[d][b] & ~(1L << b);
+    }
 
-    // Find the max path length on the board according to specified color, used to evaluate the score
-    public int maxPathLength(int color){
-        LinkedList<Coordinate> startGoals = this.goalPieces(color, 0); // 得到一边goal的chips链表
-        LinkedList<Coordinate> endGoals = this.goalPieces(color, 7);  // 得到另一边goal的chips链表
-        ListIterator<Coordinate> it = startGoals.listIterator();
-        int max = 0;
-        while (it.hasNext()){  // valid 表示 不是 null
-            Coordinate chip = it.next();
-            int[] startCoord = chip.getCoord();
-            LinkedList<Coordinate> connections = currentConnections(startCoord);  
-            LinkedList<Coordinate> visited = new LinkedList<Coordinate>();
-            int piecesUsed = 1; // start算一个
-            // 一个path必定是以startgoal作起始点的，所以尝试遍历每个startgoal里的chip
-            int tmpMax = maxPathLength(startCoord, piecesUsed, endGoals, connections, visited, -1);
-            if (max < tmpMax){  // 因为一开始没有方向，所以设为-1
-                max = tmpMax;
-            }
-        }
-        return max;
-    }
-
-    public int maxPathLength(int[] startCoord, int piecesUsed, LinkedList<Coordinate> endGoals, LinkedList<Coordinate> connections, LinkedList<Coordinate> visited, int lastDirection){   // connections是startCoord周围可连接的chip 表示以startCoord为原点能够形成connections的chips的list
-        if (piecesUsed > 10){ // 最多10个算一个path
-            return 0;
+    /**
+     * Tells whether the opponent of color can still win at once after color plays a move.
+     * Only the opponent's moves that completed a network before the move can win after it,
+     * and, for a STEP, moves onto the square the chip leaves or onto the empty squares behind
+     * it as seen from an opponent's chip. If the STEP opens a line between two of the
+     * opponent's chips, every move is checked.
+     * @param move the move color plays, packed as in PackedMove
+     * @param color the color making the move
+     * @param threats the opponent's moves listed by networkMoves before the move
+     * @param threatCount the number of entries of threats
+     * @return true if the opponent has a network after the move or a winning move next
+     */
+    private boolean threatenedAfter(int move, int color, int[] threats, int threatCount) {
+        int opponent = 1 - color;
+        long opponentChips = chips[opponent];
+        long occupied = chips[BLACK] | chips[WHITE];
+        boolean opens = false;
+        long landing = 0;  // squares the opponent may now land on with a new connection
+        if (PackedMove.kind(move) == Move.STEP) {
+            int vacated = PackedMove.from(move);
+            landing = 1L << vacated;
+            for (int d = 0; d < 8; d++) {
+                int a = firstChip(vacated, d, occupied);
+                if (a >= 0 && (opponentChips & (1L << a)) != 0) {
+                    int back = (d + 4) & 7;
+                    int b = firstChip(vacated, back, occupied);
+                    if (b >= 0 && (opponentChips & (1L << b)) != 0) {
+                        opens = true;
+                    }
+                    landing |= (b < 0) ? RAYS[back][vacated] : RAYS[back][vacated] & ~RAYS[back][b] & ~(1L << b);
+                }
+            }
+            landing &= ~FORBIDDEN[opponent];
         }
-        if (listContains(endGoals, startCoord)){ // 说明已经到达终点goal area
-            return piecesUsed;
+        short[] kept = shapes;
+        shapes = null;  // a trial move, taken back below: leave the pattern scores alone
+        makeMove(move, color);
+        boolean threatened = hasNetwork(opponent);
+        if (!threatened && opens) {
+            threatened = winningMoves(opponent, null) > 0;
         }
-        if (listContains(visited, startCoord)){  // 如果visited path已经包含这个chip，就不可能形成path，同一个chip不能用两次
-            return piecesUsed-1;
+        for (int i = 0; i < threatCount && !threatened; i++) {
+            int w = threats[i];
+            threatened = ((chips[color] & (1L << PackedMove.to(w))) == 0) && wins(w, opponent, true);
         }
-        int max = piecesUsed;
-        ListIterator<Coordinate> it = connections.listIterator();
-        while (it.hasNext()){
-            Coordinate chip = it.next();
-            int[] coord = chip.getCoord();
-            int currentDirection = direction(startCoord, coord);
-            if (currentDirection == lastDirection){  // 比较上一个connection的方向，说明方向一致不能形成下一个connection，跳过
-                continue;
-            }
-            visited.add(new Coordinate(startCoord)); // 把这个chip尝试加入path，然后继续往下面search
-            int tmpMax = maxPathLength(startCoord, piecesUsed, endGoals, connections, visited, -1);
-            if (max < tmpMax){  // 因为一开始没有方向，所以设为-1
-                max = tmpMax;
+        if (!threatened && !opens) {
+            landing &= ~(chips[BLACK] | chips[WHITE]);
+            int chipsLeft = (opponent == WHITE) ? whitePiecesLeft : blackPiecesLeft;
+            for (long t = landing; t != 0 && !threatened; t &= t - 1) {
+                int to = Long.numberOfTrailingZeros(t);
+                if (chipsLeft > 0) {
+                    threatened = !isClustered(to, -1, opponent) && wins(PackedMove.add(to), opponent, true);
+                }
+                for (long f = (chipsLeft > 0) ? 0 : opponentChips; f != 0 && !threatened; f &= f - 1) {
+                    int from = Long.numberOfTrailingZeros(f);
+                    threatened = !isClustered(to, from, opponent) && wins(PackedMove.step(from, to), opponent, true);
+                }
             }
-            visited.remove();         
         }
-        return max;
+        withdrawMove(move, color);
+        shapes = kept;
+        return threatened;
     }
 
-
-
-    // check if both goals hava chips
-    private boolean inGoalArea(int playerColor) {
-        boolean goalarea1 = false;  // 两个goal areas
-        boolean goalarea2 = false;
-        if (playerColor == WHITE){
-            for (int y = 1; y < 7; y++){
-                if (this.getSquare(0,y) == WHITE){
-                        goalarea1 = true;
+    private int completingMoves(int color, int[] buffer, boolean mustWin) {
+        int chipsLeft = (color == WHITE) ? whitePiecesLeft : blackPiecesLeft;
+        long own = chips[color];
+        if (chipsLeft > 5) {  // fewer than six chips even after this move
+            return 0;
+        }
+        if ((own & (GOAL_START[color] | GOAL_END[color])) == 0) {  // one move fills one goal area at most
+            return 0;
+        }
+        long occupied = chips[BLACK] | chips[WHITE];
+        long targets = ~(occupied | FORBIDDEN[color]);
+        int count = 0;
+        if (chipsLeft > 0) {
+            long candidates = candidateSquares(targets, own, occupied, color);
+            for (long t = candidates; t != 0; t &= t - 1) {
+                int to = Long.numberOfTrailingZeros(t);
+                if (!isClustered(to, -1, color) && wins(PackedMove.add(to), color, mustWin)) {
+                    if (buffer == null) {
+                        return 1;
+                    }
+                    buffer[count++] = PackedMove.add(to);
                 }
-                if (this.getSquare(7,y) == WHITE){
-                        goalarea2 = true;
+            }
+        } else {
+            for (long f = own; f != 0; f &= f - 1) {
+                int from = Long.numberOfTrailingZeros(f);
+                long rest = own & ~(1L << from);
+                // lift the chip, so that the connection graph shows the lines it leaves open
+                short[] kept = shapes;
+                shapes = null;  // and put straight back: the pattern scores stay as they are
+                removeChip(from, color);
+                long candidates = hasNetwork(color)
+                                  ? targets : candidateSquares(targets, rest, occupied & ~(1L << from), color);
+                placeChip(from, color);
+                shapes = kept;
+                for (long t = candidates; t != 0; t &= t - 1) {
+                    int to = Long.numberOfTrailingZeros(t);
+                    if (!isClustered(to, from, color) && wins(PackedMove.step(from, to), color, mustWin)) {
+                        if (buffer == null) {
+                            return 1;
+                        }
+                        buffer[count++] = PackedMove.step(from, to);
+                    }
                 }
             }
         }
-        if (playerColor == BLACK){
-            for (int x = 1; x < 7; x++){
-                if(this.getSquare(x,0) == BLACK){
-                        goalarea1 = true;
-                }
-                if(this.getSquare(x,7) == BLACK){
-                        goalarea2 = true;
-                }
+        return count;
+    }
+
+    // The squares of targets where a chip joining own could lie on a network: towards each
+    // goal area the square must either be in that area or see a chip connected to it, and
+    // there must be chips enough connected to the goal areas for a path of six.
+    // Reads the connection graph, which must match own.
+    private long candidateSquares(long targets, long own, long occupied, int color) {
+        long goals = GOAL_START[color] | GOAL_END[color];
+        long fromStart = reachable(own & GOAL_START[color], own);
+        long fromEnd = reachable(own & GOAL_END[color], own);
+        // a path holds one chip of each goal area, the new chip and chips from in between
+        int between = Long.bitCount((fromStart | fromEnd) & ~goals);
+        if (between < 3) {
+            return 0;
+        }
+        if (between < 4) {  // too few for a path that starts or ends on the new chip
+            targets &= ~goals;
+        }
+        // a square sees a chip exactly when the chip sees the square
+        targets &= GOAL_START[color] | seenFrom(fromStart, occupied);
+        targets &= GOAL_END[color] | seenFrom(fromEnd, occupied);
+        long candidates = 0;
+        for (long t = targets; t != 0; t &= t - 1) {
+            int to = Long.numberOfTrailingZeros(t);
+            long bit = 1L << to;
+            long seen = visibleMask(to, own, occupied);
+            // the chips a path through to could use, not counting to and the goal areas
+            long usable = reachable(seen, own) & (fromStart | fromEnd) & ~goals;
+            if (Long.bitCount(usable) >= (((goals & bit) != 0) ? 4 : 3)) {
+                candidates |= bit;
             }
         }
-        return goalarea1 && goalarea2;
+        return candidates;
     }
 
-    // check if the target position is goal area
-    private boolean isGoalPosition(Move m, int color){
-        if (color == WHITE){
-            if ((m.x1 == 0) || (m.x1 == 7)){
-                return true;
+    // the empty squares in line of sight of a chip of from
+    private long seenFrom(long from, long occupied) {
+        long seen = 0;
+        for (long f = from; f != 0; f &= f - 1) {
+            int sq = Long.numberOfTrailingZeros(f);
+            for (int d = 0; d < 8; d++) {
+                int hit = firstChip(sq, d, occupied);
+                seen |= (hit < 0) ? RAYS[d][sq] : between(sq, hit);
             }
         }
-        else if (color == BLACK){
-            if (m.y1 == 0 || m.y1 == 7){
+        return seen & ~occupied;
+    }
+
+    // the chips of own connected to a chip of seeds through the connection graph, seeds included
+    private long reachable(long seeds, long own) {
+        long reached = seeds;
+        long frontier = seeds;
+        while (frontier != 0) {
+            int sq = Long.numberOfTrailingZeros(frontier);
+            frontier &= frontier - 1;
+            long next = links[sq] & own & ~reached;
+            reached |= next;
+            frontier |= next;
+        }
+        return reached;
+    }
+
+    // whether the chip on sq stands between two chips of own, which would see each other without it
+    private boolean opensLine(int sq, long own, long occupied) {
+        for (int d = 0; d < 4; d++) {
+            int a = firstChip(sq, d, occupied);
+            int b = firstChip(sq, d + 4, occupied);
+            if (a >= 0 && b >= 0 && (own & (1L << a)) != 0 && (own & (1L << b)) != 0) {
                 return true;
             }
         }
         return false;
     }
+
+    // plays a move, checks that it completes a network for color (and, if mustWin, none for
+    // the opponent), and takes it back
+    private boolean wins(int move, int color, boolean mustWin) {
+        short[] kept = shapes;
+        shapes = null;  // the pattern scores come out the same, so they are not kept meanwhile
+        makeMove(move, color);
+        boolean win = hasNetwork(color) && !(mustWin && hasNetwork(1 - color));
+        withdrawMove(move, color);
+        shapes = kept;
+        return win;
+    }
+
+    // check if both goals hava chips
+    private boolean inGoalArea(int playerColor) {
+        return (chips[playerColor] & GOAL_START[playerColor]) != 0
+            && (chips[playerColor] & GOAL_END[playerColor]) != 0;
+    }
+
+    // check if the target position is goal area
+    protected boolean isGoalPosition(Move m, int color){
+        return isGoalSquare(square(m.x1, m.y1), color);
+    }
+
+    // check if a square lies in one of the goal areas of color
+    protected boolean isGoalSquare(int sq, int color){
+        return ((GOAL_START[color] | GOAL_END[color]) & (1L << sq)) != 0;
+    }
+
+    /**
+     * Counts how many more chips of its color a chip would see after the move than before it.
+     * For an ADD that is every chip in line of sight of the new square; for a STEP the chips
+     * seen from the old square are subtracted.
+     * @param move the move being considered, packed as in PackedMove
+     * @param color the color of the player making the move
+     * @return the change in the number of connections of the moved chip
+     */
+    protected int connectionGain(int move, int color) {
+        long occupied = chips[BLACK] | chips[WHITE];
+        long own = chips[color];
+        int lost = 0;
+        if (PackedMove.kind(move) == Move.STEP) {
+            int from = PackedMove.from(move);
+            lost = visibleChips(from, own, occupied);
+            occupied &= ~(1L << from);
+            own &= ~(1L << from);
+        }
+        return visibleChips(PackedMove.to(move), own, occupied) - lost;
+    }
+
+    // the chips of own that are the first chip met on one of the eight rays from sq
+    private long visibleMask(int sq, long own, long occupied) {
+        long seen = 0;
+        for (int d = 0; d < 8; d++) {
+            int hit = firstChip(sq, d, occupied);
+            if (hit >= 0) {
+                seen |= (1L << hit) & own;
+            }
+        }
+        return seen;
+    }
+
+    // counts the chips of own that are the first chip met on one of the eight rays from sq
+    private int visibleChips(int sq, long own, long occupied) {
+        int count = 0;
+        for (int d = 0; d < 8; d++) {
+            int hit = firstChip(sq, d, occupied);
+            if (hit >= 0 && (own & (1L << hit)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
         
         
         
-     /**
-      * Finds the pieces in the player's goal areas
-      * @param playerColor the color of the player who's goals are being searched
-      * @param x the row or column being searched (depending on color)
-      * @return a DList of the coordinates containing goal pieces
-      */
-    private LinkedList<Coordinate> goalPieces (int playerColor, int x) {
-        LinkedList<Coordinate> piecesInGoalArea = new LinkedList<Coordinate>();
-        for (int y = 1; y < 7; y++) {
-            if (playerColor == WHITE) {
-                if (this.getSquare(x, y) == WHITE) {  // x = 0 || 7
-                    int[] coord = {x, y};
-                    piecesInGoalArea.add(new Coordinate(coord));
-                }
-            } 
-            else{   
-                if (this.getSquare(y, x) == BLACK) {  // x = 0 || 7
-                    int[] coord = {y, x};
-                    piecesInGoalArea.add(new Coordinate(coord));
-                }
-            }
+    /**
+     * Returns the square of the first chip met when looking from sq in direction d,
+     * or -1 if the ray reaches the edge of the board without meeting one.
+     */
+    private int firstChip(int sq, int d, long occupied) {
+        long ray = RAYS[d][sq] & occupied;
+        if (ray == 0) {
+            return -1;
+        }
+        if (DX[d] * 8 + DY[d] > 0) {  // the ray runs towards higher bit indices
+            return Long.numberOfTrailingZeros(ray);
         }
-        return piecesInGoalArea;  // 返回链表
+        return 63 - Long.numberOfLeadingZeros(ray);
     }
-         
-      
 
-    /** currentConnections returns a DList with all the pieces containing a connection to given coordinate. 
-     * This is used to build a network. 
-     *@param x the x coordinate of the board
-     *@param y the y coordinate of the board
-     *@return a DList with all the spots on the board (Move items) containing a connection to the coordinate
+    /**
+     * Returns the chips the chip on square sq is connected to: the first chip met on each
+     * of the eight rays from sq, when it has the same color. Read from the connection
+     * graph, so it costs nothing.
+     * @param sq a square, numbered as in square(x, y)
+     * @return a mask of the connected chips, 0 if sq is empty
      */
+    protected long connectionsOf(int sq) {
+        return links[sq];
+    }
 
-     protected LinkedList<Coordinate> currentConnections(int[] startcoord){ // 以x，y起始的所有可能的connection
-        int x = startcoord[0];
-        int y = startcoord[1];
-        int color = getSquare(x,y);
-        int opp = (color == BLACK) ? WHITE : BLACK;
-        LinkedList<Coordinate> connections = new LinkedList<Coordinate>();
+    /** Returns the squares holding a chip of the given color, one bit per square. */
+    long chipsOf(int color) {
+        return chips[color];
+    }
 
-        // 下面是往8个方向search，找到能够相连的chip
-
-         //TOP-LEFT
-        int i = x-1;
-        int j = y-1;
-        while (i >= 0 && j >= 0){  // 一直向左上角search
-            if (getSquare(i,j) == color) {
-                int[] coord = {i,j};
-                connections.add(new Coordinate(coord));
-                break;
-            }
-            if (getSquare(i,j) == opp) {  // 如果被对手block就不再search
-                break;
-            }
-            i--;
-            j--;
-        }
-         //TOP
-         i =x;
-         j = y-1;
-         while (j >= 0){
-             if (getSquare(i,j) == color) {
-                int[] coord = {i,j};
-                connections.add(new Coordinate(coord));
-                break;
-            }
-             if (getSquare(i,j) == opp) {
-                break;
-             }
-             j--;
-         }
-         //TOP-RIGHT
-         i =x+1;
-         j = y-1;
-         while (i<= 7 && j >= 0){
-             if (getSquare(i,j) == color) {
-                int[] coord = {i,j};
-                connections.add(new Coordinate(coord));
-                 break;
-             }
-             if (getSquare(i,j) == opp) {
-                 break;
-             }
-             i++;
-             j--;
-         }
-         //RIGHT
-         i = x+1;
-         j = y;
-         while (i <= 7){
-             if (getSquare(i,j) == color) {
-                int[] coord = {i,j};
-                connections.add(new Coordinate(coord));
-                 break;
-             }
-             if (getSquare(i,j) == opp) {
-                 break;
-             }
-             i++;
-         }
-         //BOTTOM-RIGHT
-         i = x+1;
-         j = y+1;
-         while (i<= 7 && j <=7){
-             if (getSquare(i,j) == color) {
-                int[] coord = {i,j};
-                connections.add(new Coordinate(coord));
-                 break;
-             }
-             if (getSquare(i,j) == opp) {
-                 break;
-             }
-             i++;
-             j++;
-         }
-         //BOTTOM
-         i = x;
-         j = y+1;
-         while (j <= 7){
-             if (getSquare(i,j) == color) {
-                int[] coord = {i,j};
-                connections.add(new Coordinate(coord));
-                 break;
-             }
-             if (getSquare(i,j) == opp) {
-                 break;
-             }
-             j++;
-         }
-         //BOTTOM-LEFT
-         i = x-1;
-         j = y+1;
-         while (i >=0 && j <=7){
-             if (getSquare(i,j) == color) {
-                int[] coord = {i,j};
-                connections.add(new Coordinate(coord));
-                 break;
-             }
-             if (getSquare(i,j) == opp) {
-                 break;
-             }
-             i--;
-             j++;
-         }
-         //Left
-         i =x-1;
-         j = y;
-         while (i>= 0){
-             if (getSquare(i,j) == color) {
-                int[] coord = {i,j};
-                connections.add(new Coordinate(coord));
-                 break;
-             }
-             if (getSquare(i,j) == opp) {
-                 break;
-             }
-             i--;
-         }
-        return connections;
+    /** Returns the goal area of color at row or column 0. */
+    static long goalStart(int color) {
+        return GOAL_START[color];
     }
 
-     /**
-      * Finds which direction a connection is traveling in, based on positions of first and second chips in a connection
-      * @param first the position of the first chip
-      * @param next the position of the second coordinate
-      * @return an int represeting the direction of the connection (UP, DOWN, UP_LEFT, UP_RIGHT, DOWN_LEFT, DOWN_RIGHT)
-      */
-    private int direction(int[] first, int[] next){
-        int x1 = first[0];
-        int y1 = first[1];
-        int x2 = next[0];
-        int y2 = next[1];
-        if (x2 < x1) {
-            if (y2 == y1) {
-                return LEFT_DIRECTION;
+    /** Returns the goal area of color at row or column 7. */
+    static long goalEnd(int color) {
+        return GOAL_END[color];
+    }
+
+    /**
+     * Returns the direction from square a to square b, an index into DX and DY (0 is up,
+     * then clockwise), or -1 if the two squares share no row, column or diagonal.
+     */
+    static int directionBetween(int a, int b) {
+        return DIRECTION_BETWEEN[(a << 6) | b];
+    }
+
+    // returns the color of the chip on an occupied square
+    private int colorOf(int sq) {
+        return (int) (chips[WHITE] >>> sq) & 1;
+    }
+
+    /**
+     * Adds the chip just placed on sq to the connection graph. On each line through sq the
+     * nearest chips on either side lose their link to each other and gain one to the new chip
+     * if they share its color.
+     */
+    private void linkChip(int sq, int color) {
+        long occupied = chips[BLACK] | chips[WHITE];
+        for (int d = 0; d < 4; d++) {
+            int a = firstChip(sq, d, occupied);
+            int b = firstChip(sq, d + 4, occupied);
+            if (a >= 0 && b >= 0 && colorOf(a) == colorOf(b)) {
+                links[a] &= ~(1L << b);
+                links[b] &= ~(1L << a);
+                if (shapes != null) {
+                    scoreConnection(a, b, colorOf(a), -1);
+                }
             }
-            if (y2 > y1) {
-                return DOWN_LEFT_DIRECTION;
+            if (a >= 0 && colorOf(a) == color) {
+                links[a] |= 1L << sq;
+                links[sq] |= 1L << a;
+                if (shapes != null) {
+                    scoreConnection(a, sq, color, 1);
+                }
             }
-            if (y2 < y1) {
-                return UP_LEFT_DIRECTION;
+            if (b >= 0 && colorOf(b) == color) {
+                links[b] |= 1L << sq;
+                links[sq] |= 1L << b;
+                if (shapes != null) {
+                    scoreConnection(b, sq, color, 1);
+                }
             }
         }
-        if (x2 > x1) {
-            if (y2 == y1) {
-                return RIGHT_DIRECTION;
+    }
+
+    /**
+     * Removes the chip just taken off sq from the connection graph. On each line through sq
+     * the nearest chips on either side drop their link to it and, if they share a color, now
+     * see each other.
+     */
+    private void unlinkChip(int sq) {
+        long occupied = chips[BLACK] | chips[WHITE];
+        for (int d = 0; d < 4; d++) {
+            int a = firstChip(sq, d, occupied);
+            int b = firstChip(sq, d + 4, occupied);
+            if (a >= 0) {
+                if (shapes != null && (links[a] & (1L << sq)) != 0) {
+                    scoreConnection(a, sq, colorOf(a), -1);
+                }
+                links[a] &= ~(1L << sq);
             }
-            if (y2 > y1) {
-                return DOWN_RIGHT_DIRECTION;
+            if (b >= 0) {
+                if (shapes != null && (links[b] & (1L << sq)) != 0) {
+                    scoreConnection(b, sq, colorOf(b), -1);
+                }
+                links[b] &= ~(1L << sq);
             }
-            if (y2 < y1) {
-                return UP_RIGHT_DIRECTION;
+            if (a >= 0 && b >= 0 && colorOf(a) == colorOf(b)) {
+                links[a] |= 1L << b;
+                links[b] |= 1L << a;
+                if (shapes != null) {
+                    scoreConnection(a, b, colorOf(a), 1);
+                }
             }
         }
-        else {
-            if (y2 > y1) {
-                return DOWN_DIRECTION;
+        links[sq] = 0;
+    }
+
+    // adds (sign 1) or takes away (sign -1) the connection between the chips on a and b, both
+    // of color, to or from the pattern score, and flips its direction in both chips' shapes
+    private void scoreConnection(int a, int b, int color, int sign) {
+        int d = DIRECTION_BETWEEN[(a << 6) | b];
+        patternScores[color] += sign * PatternEvaluator.connection(color, a, b) + reshape(a, d) + reshape(b, d ^ 4);
+    }
+
+    // flips direction d in the shape of the chip on sq; returns the change of its shape value.
+    // d ^ 4 is the opposite direction.
+    private int reshape(int sq, int d) {
+        int old = shapes[sq];
+        shapes[sq] = (short) (old ^ (1 << d));
+        return PatternEvaluator.shape(old ^ (1 << d)) - PatternEvaluator.shape(old);
+    }
+
+    /**
+     * Returns PatternEvaluator's score of a color, kept by delta as chips come and go, so
+     * reading it costs nothing. The first call computes the scores from scratch and starts
+     * keeping them.
+     * @param color the color
+     * @return the score of color alone; PatternEvaluator.evaluate subtracts the opponent's
+     */
+    int patternScore(int color) {
+        if (shapes == null) {
+            short[] s = new short[64];
+            for (int c = BLACK; c <= WHITE; c++) {
+                for (long m = chips[c]; m != 0; m &= m - 1) {
+                    int sq = Long.numberOfTrailingZeros(m);
+                    s[sq] = (short) ((((GOAL_START[c] | GOAL_END[c]) >>> sq) & 1) << 8);
+                    for (long l = links[sq]; l != 0; l &= l - 1) {
+                        s[sq] |= 1 << DIRECTION_BETWEEN[(sq << 6) | Long.numberOfTrailingZeros(l)];
+                    }
+                }
             }
-            if (y2 < y1) {
-                return UP_DIRECTION;
+            patternScores = new int[] { PatternEvaluator.score(this, BLACK), PatternEvaluator.score(this, WHITE) };
+            shapes = s;
+        }
+        return patternScores[color];
+    }
+
+    // compares the running pattern scores with a full recompute, see CHECK_EVALUATION_PROPERTY
+    private void checkEvaluation() {
+        if (shapes == null) {
+            return;  // not kept
+        }
+        for (int color = BLACK; color <= WHITE; color++) {
+            int score = PatternEvaluator.score(this, color);
+            if (score != patternScores[color]) {
+                throw new IllegalStateException("running pattern score of color " + color + " is "
+                                                + patternScores[color] + ", recomputed " + score);
             }
         }
-        return -1;
+    }
+
+    /** currentConnections returns a DList with all the pieces containing a connection to given coordinate. 
+     * This is used to build a network. 
+     *@param startcoord the x and y coordinates of the chip
+     *@return a DList with all the spots on the board (Move items) containing a connection to the coordinate
+     */
+
+     protected LinkedList<Coordinate> currentConnections(int[] startcoord){ // 以x，y起始的所有可能的connection
+        LinkedList<Coordinate> connections = new LinkedList<Coordinate>();
+        if (!onBoard(startcoord[0], startcoord[1])) {
+            return connections;
+        }
+        for (long m = links[square(startcoord[0], startcoord[1])]; m != 0; m &= m - 1) {
+            int sq = Long.numberOfTrailingZeros(m);
+            connections.add(new Coordinate(sq >>> 3, sq & 7));
+        }
+        return connections;
     }
 
     /** getSquare determines the contents of the board at a given coordinate
@@ -521,12 +1053,17 @@ public class Board {
     */
 
     protected int getSquare(int x, int y) {
-         if (x<0 || x>7 || y<0 || y>7) {
+        if (!onBoard(x, y)) {
             return Board.EMPTY;
-         }
-         else {
-            return gameBoard[x][y];
         }
+        long b = bit(x, y);
+        if ((chips[BLACK] & b) != 0) {
+            return BLACK;
+        }
+        if ((chips[WHITE] & b) != 0) {
+            return WHITE;
+        }
+        return EMPTY;
     }
     
     
@@ -540,61 +1077,46 @@ public class Board {
     */
     protected LinkedList<Move> validMoves(int playerColor){  // 返回所有可能的valid moves
     	LinkedList<Move> moves = new LinkedList<Move>();
-    	int chips = (playerColor == WHITE) ? whitePiecesLeft : blackPiecesLeft;
-    	if (chips > 0){ //if there are chips left, generate valid add moves
-    		for (int i = 0; i<8; i++){
-    			for (int j = 0;j<8;j++){  // 对board上每一个格子check
-    				Move m = new Move(i,j);
-    				if(isValidMove(m,playerColor)){
-    					moves.add(m);
-    				}
-    			}
-    		}
-    	}
-        else{// generate valid STEP moves
-    		LinkedList<Coordinate> positions = new LinkedList<Coordinate>();
-    		int[] pos = new int[2];
-    		for (int j=0;j<8;j++){ //generate a list of positions where there are chips of the desired color
-    			for (int i=0; i<8; i++){
-    				if (getSquare(i,j) == playerColor){ 
-    					pos[0] = i;
-    					pos[1] = j;
-    					positions.add(new Coordinate(pos)); // 记下原来的十个chips的位置
-    				}
-    			}
-    		}
-            // 下面是再遍历每个格子，看十个原有的chip能否move到某个位置
-    		for (int j=0; j<8;j++){
-    			for (int i=0;i<8;i++){
-                    if(getSquare(i, j) != EMPTY) continue; // 如果目标位置不为空就跳过
-    				ListIterator<Coordinate> it = positions.listIterator();
-					while (it.hasNext()){ // 遍历十个原来的chips
-                        Coordinate squre = it.next();
-						int[] coord = squre.getCoord();
-						Move m = new Move(i,j,coord[0], coord[1]); //try to move each chip in the list from its current position to 
-						if(isValidMove(m, playerColor)){ //every other spot on the board, if possible add it to the moves list
-							moves.add(m);
-						}
-					}
-    			}
-    		}
-    	}	
+        int[] buffer = new int[MAX_MOVES];
+        int count = generateMoves(playerColor, buffer);
+        for (int i = 0; i < count; i++) {
+            moves.add(PackedMove.toMove(buffer[i]));
+        }
         return moves;
     }
 
     /**
-     * Determines whether a move is on the board
-     * @param m the move being evaulated
-     * @return true if it is on the board, or false if not
+     * Generates the valid moves of a player into a buffer, without allocating anything.
+     * ADD moves are generated while the player has chips left, STEP moves after that.
+     * @param playerColor the color of the player whose valid moves are being determined
+     * @param buffer receives the moves, packed as in PackedMove; must hold MAX_MOVES ints
+     * @return the number of moves written to buffer
      */
-    private boolean onBoard(Move m){
-    	if (m.x1 < 0 || m.x1 > 7){
-    		return false;
-    	}
-    	if (m.y1 < 0 || m.y1 > 7){
-    		return false;
+    protected int generateMoves(int playerColor, int[] buffer){
+        int count = 0;
+    	int chipsLeft = (playerColor == WHITE) ? whitePiecesLeft : blackPiecesLeft;
+        // every empty square this color is allowed to land on
+        long targets = ~(chips[BLACK] | chips[WHITE] | FORBIDDEN[playerColor]);
+    	if (chipsLeft > 0){ //if there are chips left, generate valid add moves
+            for (long t = targets; t != 0; t &= t - 1) {
+                int to = Long.numberOfTrailingZeros(t);
+                if (!isClustered(to, -1, playerColor)) {
+                    buffer[count++] = PackedMove.add(to);
+                }
+            }
     	}
-    	return true;
+        else{// generate valid STEP moves
+            for (long t = targets; t != 0; t &= t - 1) {
+                int to = Long.numberOfTrailingZeros(t);
+                for (long f = chips[playerColor]; f != 0; f &= f - 1) {
+                    int from = Long.numberOfTrailingZeros(f);
+                    if (!isClustered(to, from, playerColor)) {
+                        buffer[count++] = PackedMove.step(from, to);
+                    }
+                }
+            }
+    	}	
+        return count;
     }
 
     /**Determines whether a move is valid or not
@@ -603,40 +1125,39 @@ public class Board {
     *@return true if the move is valid, false otherwise
     */
     protected boolean isValidMove(Move m, int playerColor) {
-	    if (m.moveKind == Move.STEP){
-            if (m.x1 == m.x2 && m.y1 == m.y2){  // 不能不动
-                return false;
-            }
+        if (playerColor != BLACK && playerColor != WHITE) {
+            return false;
         }
-
-        if (onBoard(m)){
-            if (getSquare(m.x1,m.y1) != EMPTY){ // 目标位置不是empty
-                return false;
-            }
-            if (isCorner(m.x1,m.y1)){
+        if (m.moveKind != Move.ADD && m.moveKind != Move.STEP) {
+            return false;
+        }
+        if (!onBoard(m.x1, m.y1)) {
+            return false;
+        }
+        long to = bit(m.x1, m.y1);
+        if (((chips[BLACK] | chips[WHITE]) & to) != 0) {  // 目标位置不是empty
+            return false;
+        }
+        if ((FORBIDDEN[playerColor] & to) != 0) {  // 不能是corner或对方的goal
+            return false;
+        }
+        int from = -1;
+        int chipsLeft = (playerColor == WHITE) ? whitePiecesLeft : blackPiecesLeft;
+        if (m.moveKind == Move.ADD) {
+            if (chipsLeft == 0) {  // 如果是ADD, 需要还有chips能用
                 return false;
             }
-            if (playerColor == BLACK){
-                if (m.moveKind == Move.ADD && blackPiecesLeft == 0){  // 如果是ADD, 需要还有chips能用
-                    return false;
-                }
-                if (isGoalPosition(m,WHITE) || isClustered(m, playerColor)){  // 不能是在对方的goal，也不能形成cluster
-                    return false;
-                }
-                return true;    
-            }
-            else if (playerColor == WHITE){
-                if (m.moveKind == Move.ADD && whitePiecesLeft == 0){
-                    return false;
-                }
-                if (isGoalPosition(m,BLACK) || isClustered(m,playerColor)){
-                    return false;
-                }
-                return true;
-            }
         }
-        return false;
-
+        else if (chipsLeft > 0) {
+            return false;  // chips can only step once all ten are on the board
+        }
+        else if (!onBoard(m.x2, m.y2) || (chips[playerColor] & bit(m.x2, m.y2)) == 0) {
+            return false;  // a step has to move one of the player's own chips
+        }
+        else {
+            from = square(m.x2, m.y2);
+        }
+        return !isClustered(square(m.x1, m.y1), from, playerColor);
 	}
 
 
@@ -649,8 +1170,19 @@ public class Board {
     */
 
     protected void makeMove(Move m, int playerColor){
-        if (m.moveKind == Move.ADD) {
-            gameBoard[m.x1][m.y1] = playerColor;
+        makeMove(PackedMove.fromMove(m), playerColor);
+    }
+    
+    protected void withdrawMove(Move m, int playerColor){
+        withdrawMove(PackedMove.fromMove(m), playerColor);
+    }
+
+    /** Same as makeMove(Move, int), for a move packed as in PackedMove. */
+    protected void makeMove(int move, int playerColor){
+        int kind = PackedMove.kind(move);
+        int to = PackedMove.to(move);
+        if (kind == Move.ADD) {
+            placeChip(to, playerColor);
             if (playerColor == Board.WHITE) {
                 whitePiecesLeft--;
         	}
@@ -658,15 +1190,21 @@ public class Board {
                 blackPiecesLeft--;
         	}
     	}
-    	else if (m.moveKind == Move.STEP) {
-    		gameBoard[m.x2][m.y2] = Board.EMPTY; 
-    		gameBoard[m.x1][m.y1] = playerColor; 
+    	else if (kind == Move.STEP) {
+            removeChip(PackedMove.from(move), playerColor);
+            placeChip(to, playerColor);
     	}
+        if (CHECK_EVALUATION) {
+            checkEvaluation();
+        }
     }
-    
-    protected void withdrawMove(Move m, int playerColor){
-        if (m.moveKind == Move.ADD) {
-            gameBoard[m.x1][m.y1] = EMPTY;
+
+    /** Same as withdrawMove(Move, int), for a move packed as in PackedMove. */
+    protected void withdrawMove(int move, int playerColor){
+        int kind = PackedMove.kind(move);
+        int to = PackedMove.to(move);
+        if (kind == Move.ADD) {
+            removeChip(to, playerColor);
             if (playerColor == Board.WHITE) {
                 whitePiecesLeft++;
             }
@@ -674,10 +1212,50 @@ public class Board {
                 blackPiecesLeft++;
             }
         }
-        else if (m.moveKind == Move.STEP) {
-            gameBoard[m.x2][m.y2] = playerColor; 
-            gameBoard[m.x1][m.y1] = Board.EMPTY; 
+        else if (kind == Move.STEP) {
+            removeChip(to, playerColor);
+            placeChip(PackedMove.from(move), playerColor);
+        }
+        if (CHECK_EVALUATION) {
+            checkEvaluation();
+        }
+    }
+
+    // puts a chip on an empty square, updating the hash, the connection graph and the
+    // pattern score
+    private void placeChip(int sq, int color) {
+        if (shapes != null) {
+            shapes[sq] = (short) ((((GOAL_START[color] | GOAL_END[color]) >>> sq) & 1) << 8);
+            patternScores[color] += PatternEvaluator.goals(chips[color] | (1L << sq), color)
+                - PatternEvaluator.goals(chips[color], color)
+                + PatternEvaluator.square(color, sq) + PatternEvaluator.shape(shapes[sq]);
+        }
+        chips[color] |= 1L << sq;
+        updateSymmetricHashes(sq, color);
+        linkChip(sq, color);
+    }
+
+    // takes a chip off its square, updating the hash, the connection graph and the pattern
+    // score
+    private void removeChip(int sq, int color) {
+        chips[color] &= ~(1L << sq);
+        updateSymmetricHashes(sq, color);
+        unlinkChip(sq);
+        if (shapes != null) {
+            // unlinkChip has taken the chip's connections off already
+            patternScores[color] += PatternEvaluator.goals(chips[color], color)
+                - PatternEvaluator.goals(chips[color] | (1L << sq), color)
+                - PatternEvaluator.square(color, sq) - PatternEvaluator.shape(shapes[sq]);
+            shapes[sq] = 0;
         }
     }
-}
 
+    // adds or removes a chip in the hash of every symmetric image of the board
+    private void updateSymmetricHashes(int sq, int color) {
+        long[] h = symmetricHashes;
+        int i = (color << 6) | sq;
+        for (int t = 0; t < SYMMETRIES; t++) {
+            h[t] ^= SYMMETRIC_ZOBRIST[(t << 7) | i];
+        }
+    }
+}
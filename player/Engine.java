@@ -0,0 +1,300 @@
+/* Engine.java */
+
+package player;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ *  Plays Network over a line-based text protocol on standard input and output,
+ *  in the spirit of UCI, so that a game service can host MachinePlayer out of
+ *  process and keep one warm JVM, JIT-compiled code and all, for any number of
+ *  games.
+ *
+ *  Moves are written as in PackedMove.format: "34" adds a chip at x = 3, y = 4,
+ *  and "21-34" steps the chip on 21 to 34.  Commands, one per line:
+ *    setoption SETTINGS   configures the players with the settings of a
+ *                         Tournament.Entrant, e.g. threads=2,eval=pattern, and
+ *                         starts a new game
+ *    newgame              starts a new game: the players forget the last one
+ *    position [MOVES]     the position reached by these moves from the empty
+ *                         board, white's first; replaces the previous position
+ *    go [depth N] [movetime MS] [nodes N] [infinite]
+ *                         searches the position for the side to move, on a
+ *                         background thread, and answers with info and bestmove.
+ *                         depth applies only without movetime, nodes and infinite;
+ *                         with no limit at all the setoption depth and time are used
+ *    stop                 ends the search early; it still answers with bestmove
+ *    isready              answers readyok at once
+ *    quit                 stops any search and exits
+ *  Answers:
+ *    info depth D score S nodes N time MS pv MOVES
+ *                         S is the score for the side to move in evaluation
+ *                         units, or "win N" / "loss N" for a network N plies on
+ *    bestmove MOVE        "none" if the game is over
+ *    readyok
+ *    error MESSAGE        for a command that could not be carried out
+ *
+ *  Each color is played by its own MachinePlayer, which is kept from one go to
+ *  the next as long as the new position follows on from the last one, so the
+ *  transposition table is not thrown away between moves.  Commands other than
+ *  stop, isready and quit wait for a running search to finish.
+ *
+ *  Usage: java player.Engine
+ */
+public class Engine {
+
+    // time budget of "go infinite": a year
+    private static final long INFINITE_MILLIS = 365L * 24 * 3600 * 1000;
+
+    private final BufferedReader in;
+    private final PrintStream out;
+
+    private Tournament.Entrant settings = new Tournament.Entrant("");
+    // players[color], null until needed in the current game; played[color][0 .. playedCount[color])
+    // are the moves on its board
+    private final MachinePlayer[] players = new MachinePlayer[2];
+    private final int[][] played = new int[2][64];
+    private final int[] playedCount = new int[2];
+
+    // the current position: moves[0 .. plies) from the empty board
+    private int[] moves = new int[64];
+    private int plies;
+    private Board board = new Board();
+
+    private Thread search;          // the running search, or null
+    private MachinePlayer searcher; // the player searching
+
+    public Engine(InputStream in, OutputStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in));
+        this.out = new PrintStream(new BufferedOutputStream(out), false);
+    }
+
+    /** Reads and carries out commands until quit or the end of the input. */
+    public void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            String command = words[0];
+            if (command.isEmpty()) {
+                continue;
+            }
+            try {
+                if (command.equals("quit")) {
+                    break;
+                } else if (command.equals("isready")) {
+                    reply("readyok");
+                } else if (command.equals("stop")) {
+                    stop();
+                } else {
+                    waitForSearch();
+                    if (command.equals("newgame")) {
+                        newGame();
+                    } else if (command.equals("position")) {
+                        position(words);
+                    } else if (command.equals("go")) {
+                        go(words);
+                    } else if (command.equals("setoption")) {
+                        settings = new Tournament.Entrant(line.trim().substring(command.length()).trim());
+                        newGame();
+                    } else {
+                        reply("error unknown command " + command);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                reply("error " + e.getMessage());
+            } catch (IllegalStateException e) {
+                reply("error " + e.getMessage());
+            }
+        }
+        stop();
+        newGame();
+    }
+
+    private void newGame() {
+        retire(players[Board.BLACK]);
+        retire(players[Board.WHITE]);
+        players[Board.BLACK] = null;
+        players[Board.WHITE] = null;
+        playedCount[Board.BLACK] = 0;
+        playedCount[Board.WHITE] = 0;
+        plies = 0;
+        board = new Board();
+    }
+
+    // "position [MOVES]": checks every move before taking the position
+    private void position(String[] words) {
+        Board b = new Board();
+        int[] m = new int[Math.max(64, words.length)];
+        int n = 0;
+        for (int i = 1; i < words.length; i++) {
+            int color = (n % 2 == 0) ? Board.WHITE : Board.BLACK;
+            int move = PackedMove.parse(words[i]);
+            if (move == PackedMove.NONE || b.hasNetwork(Board.WHITE) || b.hasNetwork(Board.BLACK)
+                || !b.isValidMove(PackedMove.toMove(move), color)) {
+                throw new IllegalArgumentException("illegal move " + words[i]);
+            }
+            b.makeMove(move, color);
+            m[n++] = move;
+        }
+        moves = m;
+        plies = n;
+        board = b;
+    }
+
+    // "go [depth N] [movetime MS] [nodes N] [infinite]"
+    private void go(String[] words) {
+        int depth = 0;
+        long time = 0;
+        long nodes = 0;
+        boolean infinite = false;
+        for (int i = 1; i < words.length; i++) {
+            if (words[i].equals("infinite")) {
+                infinite = true;
+            } else if (i + 1 < words.length && words[i].equals("depth")) {
+                depth = Integer.parseInt(words[++i]);
+            } else if (i + 1 < words.length && words[i].equals("movetime")) {
+                time = Long.parseLong(words[++i]);
+            } else if (i + 1 < words.length && words[i].equals("nodes")) {
+                nodes = Long.parseLong(words[++i]);
+            } else {
+                throw new IllegalArgumentException("bad go argument " + words[i]);
+            }
+        }
+        final int color = (plies % 2 == 0) ? Board.WHITE : Board.BLACK;
+        int[] buffer = new int[Board.MAX_MOVES];
+        if (board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK) || board.generateMoves(color, buffer) == 0) {
+            reply("bestmove none");
+            return;
+        }
+        final MachinePlayer player = playerFor(color);
+        if (depth == 0 && time == 0 && nodes == 0 && !infinite) {
+            depth = settings.depth();
+            time = settings.time();
+        }
+        player.setSearchDepth(Math.max(depth, 1));
+        player.setTimeBudget(infinite ? INFINITE_MILLIS : time);
+        player.setNodeBudget(nodes);
+        searcher = player;
+        search = new Thread(new Runnable() {
+            public void run() {
+                think(player, color);
+            }
+        }, "engine search");
+        search.start();
+    }
+
+    // Searches on the search thread and answers with info and bestmove.
+    private void think(MachinePlayer player, int color) {
+        Move best = player.chooseMove();
+        int move = PackedMove.fromMove(best);
+        if (playedCount[color] == played[color].length) {
+            played[color] = Arrays.copyOf(played[color], 2 * playedCount[color]);
+        }
+        played[color][playedCount[color]++] = move;
+        SearchStats stats = player.searchStats();
+        StringBuilder sb = new StringBuilder();
+        sb.append("info depth ").append(stats.depth())
+          .append(" score ").append(score(stats.score()))
+          .append(" nodes ").append(stats.nodes())
+          .append(" time ").append(stats.nanos() / 1000000)
+          .append(" pv");
+        Move[] pv = player.principalVariation();
+        if (pv.length == 0) {
+            sb.append(' ').append(PackedMove.format(move));
+        }
+        for (Move m : pv) {
+            sb.append(' ').append(PackedMove.format(PackedMove.fromMove(m)));
+        }
+        reply(sb.toString());
+        reply("bestmove " + PackedMove.format(move));
+    }
+
+    // a score as "info" writes it
+    static String score(int score) {
+        if (!Searcher.isForced(score)) {
+            return Integer.toString(score);
+        }
+        return ((score > 0) ? "win " : "loss ") + (Searcher.WIN_SCORE - Math.abs(score));
+    }
+
+    // The player of color with the current position on its board: the one of the last go
+    // if its board is on the way to this position, otherwise a new one.
+    private MachinePlayer playerFor(int color) {
+        MachinePlayer player = players[color];
+        int done = playedCount[color];
+        boolean follows = player != null && done <= plies;
+        for (int i = 0; follows && i < done; i++) {
+            follows = played[color][i] == moves[i];
+        }
+        if (!follows) {
+            retire(player);
+            player = settings.newPlayer(color);
+            players[color] = player;
+            done = 0;
+        }
+        for (int i = done; i < plies; i++) {
+            Move m = PackedMove.toMove(moves[i]);
+            int mover = (i % 2 == 0) ? Board.WHITE : Board.BLACK;
+            boolean ok = (mover == color) ? player.forceMove(m) : player.opponentMove(m);
+            if (!ok) {
+                retire(player);  // its board is no longer on the way to the position
+                players[color] = null;
+                playedCount[color] = 0;
+                throw new IllegalStateException("player rejected " + PackedMove.format(moves[i]));
+            }
+            if (i == played[color].length) {
+                played[color] = Arrays.copyOf(played[color], 2 * i);
+            }
+            played[color][i] = moves[i];
+        }
+        playedCount[color] = plies;
+        return player;
+    }
+
+    // Stops the background threads of a player that is no longer used, as Tournament does.
+    private static void retire(MachinePlayer player) {
+        if (player != null) {
+            player.setPondering(false);  // stops the ponderer
+            player.setThreads(1);        // shuts down the player's pool
+        }
+    }
+
+    // Ends the running search, which answers with bestmove before it returns.
+    private void stop() {
+        while (search != null && search.isAlive()) {
+            searcher.stopSearch();  // repeated, in case the search had not started yet
+            try {
+                search.join(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        search = null;
+    }
+
+    private void waitForSearch() {
+        if (search != null) {
+            try {
+                search.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            search = null;
+        }
+    }
+
+    private void reply(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        new Engine(System.in, System.out).run();
+        System.exit(0);  // pool threads of the players may still be alive
+    }
+
+}
@@ -0,0 +1,131 @@
+/* EvaluationWeights.java */
+
+package player;
+
+import java.io.*;
+import java.util.Properties;
+
+/**
+ *  The weights of the features MachinePlayer.evaluateBoard scores a position by.
+ *  A container for data, like Move: the fields are public.
+ *
+ *  Weights files are java.util.Properties files with one entry per weight, named
+ *  as the fields; Tuner writes them, and every MachinePlayer reads the one named by
+ *  the player.weights system property (see defaultWeights).
+ */
+public class EvaluationWeights {
+
+    // system property naming the weights file every MachinePlayer uses, see defaultWeights
+    public static final String WEIGHTS_PROPERTY = "player.weights";
+
+    /** The number of features, and of weights. */
+    public static final int FEATURES = 2;
+
+    private static EvaluationWeights defaultWeights;
+
+    public double goalSide = 5.0;     // per goal area the color has a chip in
+    public double connection = 10.0;  // per chip of the color's longest path (see Board.maxPathLength)
+
+    /** Creates the hand-set weights the evaluation always had. */
+    public EvaluationWeights() {
+    }
+
+    /**
+     *  Reads a weights file.  Weights it does not mention keep their hand-set values.
+     *  @throws IOException if the file cannot be read or a weight is not a number.
+     */
+    public static EvaluationWeights load(File file) throws IOException {
+        Properties p = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            p.load(in);
+        } finally {
+            in.close();
+        }
+        EvaluationWeights w = new EvaluationWeights();
+        try {
+            w.goalSide = Double.parseDouble(p.getProperty("goalSide", Double.toString(w.goalSide)));
+            w.connection = Double.parseDouble(p.getProperty("connection", Double.toString(w.connection)));
+        } catch (NumberFormatException e) {
+            throw new IOException(file + ": " + e.getMessage());
+        }
+        return w;
+    }
+
+    /** Writes these weights to a file that load reads. */
+    public void save(File file) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("goalSide", Double.toString(goalSide));
+        p.setProperty("connection", Double.toString(connection));
+        OutputStream out = new FileOutputStream(file);
+        try {
+            p.store(out, "evaluation weights, see player.EvaluationWeights");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     *  Returns the weights named by the player.weights system property, read the first
+     *  time they are asked for.  A file that cannot be read is reported on System.err
+     *  once; the players then use the hand-set weights.
+     *  @return the weights; the hand-set ones if the property is not set.
+     */
+    public static synchronized EvaluationWeights defaultWeights() {
+        if (defaultWeights == null) {
+            defaultWeights = new EvaluationWeights();
+            String name = System.getProperty(WEIGHTS_PROPERTY);
+            if (name != null) {
+                try {
+                    defaultWeights = load(new File(name));
+                } catch (IOException e) {
+                    System.err.println("evaluation weights not used: " + e.getMessage());
+                }
+            }
+        }
+        return defaultWeights;
+    }
+
+    /** Returns the weights in feature order, as features lists the features. */
+    public double[] toArray() {
+        return new double[] { goalSide, connection };
+    }
+
+    /** Creates weights from an array in feature order. */
+    public static EvaluationWeights fromArray(double[] w) {
+        EvaluationWeights weights = new EvaluationWeights();
+        weights.goalSide = w[0];
+        weights.connection = w[1];
+        return weights;
+    }
+
+    /**
+     *  Computes the features of a position without a network, white's minus black's, so
+     *  that evaluateBoard for white is the dot product of the weights and the features.
+     *  @param b the position.
+     *  @param into receives FEATURES values.
+     */
+    public static void features(Board b, double[] into) {
+        into[0] = goalSides(b, Board.WHITE) - goalSides(b, Board.BLACK);
+        into[1] = b.maxPathLength(Board.WHITE) - b.maxPathLength(Board.BLACK);
+    }
+
+    /**
+     *  Counts the goal areas a color has a chip in.
+     *  @return 0, 1 or 2.
+     */
+    static int goalSides(Board b, int color) {
+        int sides = 0;
+        for (int end = 0; end <= 7; end += 7) {
+            for (int i = 1; i < 7; i++) {
+                int square = (color == Board.WHITE) ? b.getSquare(end, i) : b.getSquare(i, end);
+                if (square == color) {
+                    sides++;
+                    break;
+                }
+            }
+        }
+        return sides;
+    }
+
+}
@@ -0,0 +1,203 @@
+/* GameRecordReader.java */
+
+package player;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *  Reads a file of game records written by GameRecordWriter.  The file is
+ *  memory-mapped, a window of it at a time, and read in place: the reader is a
+ *  cursor that next() moves from one game to the following one, and the current
+ *  game's result, players and moves are read straight from the mapped bytes.
+ *  Nothing is allocated per game, so files of millions of games scan at the
+ *  speed of the disk.
+ *
+ *  File layout, big-endian:
+ *    int    MAGIC
+ *    int    VERSION
+ *    games, one after another:
+ *      byte   winner: Board.BLACK, Board.WHITE or 2 for a draw or unfinished game
+ *      short  number of plies, unsigned
+ *      short  white player id, unsigned; what ids mean is up to the writer
+ *      short  black player id, unsigned
+ *      the moves, white's first.  The first 20 plies of a game are always ADD
+ *      moves and the rest always STEP moves, so the kind is not stored:
+ *        ADD    1 byte, the new square
+ *        STEP   2 bytes, the new square and then the old one
+ *  Squares are numbered as in Board.square, x * 8 + y.
+ */
+public class GameRecordReader implements Closeable {
+
+    public static final int MAGIC = 0x4E574752;  // "NWGR"
+    public static final int VERSION = 1;
+    public static final int DRAW = 2;           // the winner byte of a game without one
+
+    static final int HEADER_BYTES = 8;
+    static final int GAME_HEADER_BYTES = 7;
+    static final int ADD_PLIES = 20;            // both players add all ten chips first
+    static final int MAX_PLIES = 0xFFFF;
+
+    // bytes mapped at once; remapped as the cursor moves past the end
+    private static final int WINDOW_BYTES = 1 << 28;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long next = HEADER_BYTES;  // file offset of the next game
+
+    // the current game; its moves start at window offset moveOffset
+    private int winner;
+    private int plies;
+    private int whitePlayer;
+    private int blackPlayer;
+    private int moveOffset;
+
+    /**
+     *  Opens a file of game records, positioned before the first game.
+     *  @throws IOException if the file cannot be read or is not a game record file.
+     */
+    public GameRecordReader(File f) throws IOException {
+        file = new RandomAccessFile(f, "r");
+        channel = file.getChannel();
+        length = channel.size();
+        boolean ok = false;
+        try {
+            if (length < HEADER_BYTES) {
+                throw new IOException(f + " is not a game record file");
+            }
+            map(0);
+            if (window.getInt(0) != MAGIC || window.getInt(4) != VERSION) {
+                throw new IOException(f + " is not a game record file of version " + VERSION);
+            }
+            ok = true;
+        } finally {
+            if (!ok) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     *  Moves to the next game.
+     *  @return false if there are no more games.
+     *  @throws IOException if the file ends in the middle of a game.
+     */
+    public boolean next() throws IOException {
+        if (next >= length) {
+            return false;
+        }
+        int offset = reach(next, GAME_HEADER_BYTES);
+        winner = window.get(offset);
+        if (winner < Board.BLACK || winner > DRAW) {
+            throw new IOException("corrupt game record at offset " + next);
+        }
+        plies = window.getShort(offset + 1) & 0xFFFF;
+        whitePlayer = window.getShort(offset + 3) & 0xFFFF;
+        blackPlayer = window.getShort(offset + 5) & 0xFFFF;
+        int bytes = GAME_HEADER_BYTES + moveBytes(plies);
+        moveOffset = reach(next, bytes) + GAME_HEADER_BYTES;
+        next += bytes;
+        return true;
+    }
+
+    /** Returns the winner of the current game: Board.BLACK, Board.WHITE or DRAW. */
+    public int winner() {
+        return winner;
+    }
+
+    /** Returns the number of moves of the current game. */
+    public int plies() {
+        return plies;
+    }
+
+    public int whitePlayer() {
+        return whitePlayer;
+    }
+
+    public int blackPlayer() {
+        return blackPlayer;
+    }
+
+    /**
+     *  Returns a move of the current game.
+     *  @param ply 0 for white's first move, 1 for black's first move and so on.
+     *  @return the move, packed as in PackedMove.
+     */
+    public int move(int ply) {
+        if (ply < 0 || ply >= plies) {
+            throw new IndexOutOfBoundsException("ply " + ply + " of " + plies);
+        }
+        if (ply < ADD_PLIES) {
+            return PackedMove.add(window.get(moveOffset + ply));
+        }
+        int offset = moveOffset + ADD_PLIES + 2 * (ply - ADD_PLIES);
+        return PackedMove.step(window.get(offset + 1), window.get(offset));
+    }
+
+    /**
+     *  Copies the moves of the current game.
+     *  @param buffer receives the moves, packed as in PackedMove; must hold plies() ints.
+     *  @return the number of moves copied.
+     */
+    public int moves(int[] buffer) {
+        for (int i = 0; i < plies; i++) {
+            buffer[i] = move(i);
+        }
+        return plies;
+    }
+
+    public void close() throws IOException {
+        file.close();  // the mapping stays valid until it is collected
+    }
+
+    /** The bytes the moves of a game of the given length take. */
+    static int moveBytes(int plies) {
+        return Math.min(plies, ADD_PLIES) + 2 * Math.max(plies - ADD_PLIES, 0);
+    }
+
+    // Makes the bytes [position, position + bytes) of the file readable and returns the
+    // offset of position in the window.
+    private int reach(long position, int bytes) throws IOException {
+        if (position + bytes > length) {
+            throw new IOException("game record file ends in the middle of a game");
+        }
+        if (position + bytes > windowStart + window.limit()) {
+            map(position);
+        }
+        return (int) (position - windowStart);
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, length - position));
+    }
+
+    /** Prints how many games a file holds and how they ended. */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: java player.GameRecordReader file");
+            System.exit(2);
+        }
+        long games = 0;
+        long plies = 0;
+        long[] winners = new long[3];
+        GameRecordReader reader = new GameRecordReader(new File(args[0]));
+        try {
+            while (reader.next()) {
+                games++;
+                plies += reader.plies();
+                winners[reader.winner()]++;
+            }
+        } finally {
+            reader.close();
+        }
+        System.out.printf("%d games, %.1f plies on average: white %d, black %d, drawn %d%n", games,
+                          (games > 0) ? (double) plies / games : 0.0,
+                          winners[Board.WHITE], winners[Board.BLACK], winners[DRAW]);
+    }
+
+}
@@ -0,0 +1,101 @@
+/* GameRecordWriter.java */
+
+package player;
+
+import java.io.*;
+
+/**
+ *  Writes games to a file of game records, one after another as they finish,
+ *  through a buffered stream, so that a server can keep every game it plays.
+ *  A game takes 7 bytes plus one byte per ADD and two per STEP; the layout is
+ *  described in GameRecordReader.  The methods are synchronized, so the games of
+ *  several threads can go to one writer.
+ */
+public class GameRecordWriter implements Closeable, Flushable {
+
+    private final DataOutputStream out;
+
+    /**
+     *  Opens a file for writing.
+     *  @param file the file.
+     *  @param append true to add games to the end of an existing file (a missing or
+     *  empty file is started afresh); false to replace it.
+     *  @throws IOException if the file cannot be written, or append is true and the
+     *  file is not a game record file.
+     */
+    public GameRecordWriter(File file, boolean append) throws IOException {
+        boolean started = append && file.length() > 0;
+        if (started) {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != GameRecordReader.MAGIC || in.readInt() != GameRecordReader.VERSION) {
+                    throw new IOException(file + " is not a game record file of version " + GameRecordReader.VERSION);
+                }
+            } catch (EOFException e) {
+                throw new IOException(file + " is not a game record file");
+            } finally {
+                in.close();
+            }
+        }
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, started)));
+        if (!started) {
+            out.writeInt(GameRecordReader.MAGIC);
+            out.writeInt(GameRecordReader.VERSION);
+        }
+    }
+
+    /**
+     *  Writes a game played by a Referee.
+     *  @param game the game.
+     *  @param whitePlayer an id for the white player, 0 to 65535.
+     *  @param blackPlayer an id for the black player, 0 to 65535.
+     */
+    public void write(Referee.Game game, int whitePlayer, int blackPlayer) throws IOException {
+        int winner = (game.winner == Referee.DRAW) ? GameRecordReader.DRAW : game.winner;
+        write(winner, game.moves, game.plies, whitePlayer, blackPlayer);
+    }
+
+    /**
+     *  Writes a game.
+     *  @param winner Board.WHITE, Board.BLACK, or GameRecordReader.DRAW if the game has
+     *  no winner.
+     *  @param moves the moves from the empty board on, packed as in PackedMove.
+     *  @param plies the number of moves.
+     *  @param whitePlayer an id for the white player, 0 to 65535.
+     *  @param blackPlayer an id for the black player, 0 to 65535.
+     *  @throws IllegalArgumentException if the game cannot be stored: a value is out of
+     *  range, or an ADD comes after the 20th ply or a STEP before it.
+     */
+    public synchronized void write(int winner, int[] moves, int plies, int whitePlayer, int blackPlayer)
+        throws IOException {
+        if (winner < 0 || winner > GameRecordReader.DRAW || plies < 0 || plies > GameRecordReader.MAX_PLIES
+            || (whitePlayer & ~0xFFFF) != 0 || (blackPlayer & ~0xFFFF) != 0) {
+            throw new IllegalArgumentException("game out of range");
+        }
+        for (int i = 0; i < plies; i++) {
+            int kind = (i < GameRecordReader.ADD_PLIES) ? Move.ADD : Move.STEP;
+            if (PackedMove.kind(moves[i]) != kind) {
+                throw new IllegalArgumentException("ply " + i + " is not a" + ((kind == Move.ADD) ? "n ADD" : " STEP"));
+            }
+        }
+        out.writeByte(winner);
+        out.writeShort(plies);
+        out.writeShort(whitePlayer);
+        out.writeShort(blackPlayer);
+        for (int i = 0; i < plies; i++) {
+            out.writeByte(PackedMove.to(moves[i]));
+            if (i >= GameRecordReader.ADD_PLIES) {
+                out.writeByte(PackedMove.from(moves[i]));
+            }
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+}
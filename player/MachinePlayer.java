@@ -3,6 +3,9 @@
 package player;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -15,8 +18,47 @@ public class MachinePlayer extends Player {
     protected int opponentColor;
     protected int searchDepth;
     protected Board board;
+    protected TranspositionTable table;
+    protected long timeBudget;  // milliseconds per move, 0 means search to searchDepth
+    protected long nodeBudget;  // nodes per move, 0 means no limit; see setNodeBudget
+    protected int threads = 1;  // search threads, see setThreads
+    protected int parallelMode = ROOT_SPLIT;
     public static final boolean COMPUTER = true;
 
+    // parallel search modes, see setParallelMode
+    public static final int ROOT_SPLIT = 0;
+    public static final int LAZY_SMP = 1;
+
+    // leaf evaluations, see setEvaluation
+    public static final int PATH_EVALUATION = 0;
+    public static final int PATTERN_EVALUATION = 1;
+
+    // log2 of the number of transposition table slots (16 bytes each)
+    private static final int TABLE_SIZE_BITS = 20;
+    // deepest iteration tried when searching against the clock
+    private static final int MAX_SEARCH_DEPTH = 32;
+
+    volatile long deadline;    // System.nanoTime() after which the search gives up; see stopSearch
+    volatile boolean timeUp;   // set once the deadline has passed; unwinds every search thread
+    volatile boolean mayAbort; // false while the first iteration runs, so there is always a move
+    // nodes searched for the current move by every thread, counted only under a node budget
+    private final AtomicLong budgetNodes = new AtomicLong();
+
+    private Searcher searcher; // searches the player's own board on the calling thread
+    private ForkJoinPool pool; // created on first use when threads > 1
+    // the Searcher of each pool thread for ROOT_SPLIT, on a board of its own; see rootSearcher
+    private ThreadLocal<Searcher> rootSearchers = newRootSearchers();
+    private SearchStats lastStats = new SearchStats(MAX_SEARCH_DEPTH); // see searchStats
+    private OpeningBook book = OpeningBook.defaultBook(); // null plays every move by search
+    private EvaluationWeights weights = EvaluationWeights.defaultWeights(); // see setWeights
+    private int evaluation = PATH_EVALUATION; // see setEvaluation
+    private boolean pondering;  // see setPondering
+    private Ponderer ponderer;  // the search running on the opponent's time, or null
+    private Ponderer ponderHit; // a stopped Ponderer whose guess the opponent played, or null
+    // the line the last search expects, from the move chooseMove played on; see principalVariation
+    private final int[] variation = new int[Searcher.MAX_PLY];
+    private int variationLength;
+
   
     /**
     * 
@@ -29,6 +71,8 @@ public class MachinePlayer extends Player {
       this.opponentColor = (color == Board.BLACK) ? Board.WHITE : Board.BLACK;
       this.searchDepth = 3;  // 默认depth是 3
       board = new Board();
+      table = new TranspositionTable(TABLE_SIZE_BITS);
+      searcher = new Searcher(this, board);
     }
 
     /**Creates a machine player with the given color and search depth.  Color is
@@ -41,13 +85,206 @@ public class MachinePlayer extends Player {
         this.opponentColor = (color == Board.BLACK) ? Board.WHITE : Board.BLACK;
         this.searchDepth = searchDepth; // 自定一个depth
         board = new Board();
+        table = new TranspositionTable(TABLE_SIZE_BITS);
+        searcher = new Searcher(this, board);
+    }
+
+    /**Creates a machine player that searches as deep as it can within a time budget.
+    * Color is either 0 (black) or 1 (white).  (White has the first move.)
+    * @param color the color of the player
+    * @param searchDepth the depth searched when timeBudget is 0
+    * @param timeBudget the wall-clock time allowed per move, in milliseconds
+    */
+    public MachinePlayer(int color, int searchDepth, long timeBudget) {
+        this(color, searchDepth);
+        setTimeBudget(timeBudget);
+    }
+
+    /**Sets the wall-clock time chooseMove may spend on a move. With a budget the player
+    * deepens its search one ply at a time until the time runs out and plays the best move
+    * of the last depth it finished; with a budget of 0 it always searches to searchDepth.
+    * @param timeBudget milliseconds per move, or 0 for a fixed-depth search
+    */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = Math.max(0, timeBudget);
+    }
+
+    /**Sets the number of positions chooseMove may search for a move, counted over every
+    * search thread. Like a time budget, a node budget deepens the search one ply at a time
+    * until the budget is spent and plays the best move of the last depth it finished; the
+    * count is checked every few hundred nodes per thread, so it may be overshot by that much.
+    * @param nodeBudget nodes per move, or 0 for no limit
+    */
+    public void setNodeBudget(long nodeBudget) {
+        this.nodeBudget = Math.max(0, nodeBudget);
+    }
+
+    /**Sets the depth chooseMove searches to when there is neither a time nor a node budget.
+    * @param searchDepth the depth, at least 1
+    */
+    public void setSearchDepth(int searchDepth) {
+        this.searchDepth = Math.max(1, searchDepth);
+    }
+
+    /**Makes a chooseMove running on another thread return as soon as it can: at once if
+    * the first iteration of the deepening has finished, otherwise once it has, so that there
+    * is always a move. Does nothing if no search is running; a call that comes just before
+    * a search starts may be missed, so callers waiting for the move should repeat it.
+    */
+    public void stopSearch() {
+        deadline = Long.MIN_VALUE;
+    }
+
+    /**Sets up a position to search from, for analysis: the player takes the given color and
+    * a copy of the board, and forgets everything it has searched before (the transposition
+    * table included, see TranspositionTable.forget), so that what it finds does not depend
+    * on earlier positions.
+    * @param position the position; not changed
+    * @param color the color the player plays from now on
+    */
+    void setPosition(Board position, int color) {
+        stopPondering();
+        ponderHit = null;
+        variationLength = 0;
+        this.color = color;
+        this.opponentColor = 1 - color;
+        board = new Board(position);
+        table.forget();
+        searcher = new Searcher(this, board);
+        rootSearchers = newRootSearchers();  // theirs know the old color
+    }
+
+    /**Returns the calling thread's Searcher for the root-split search, created the first time
+    * the thread asks. It keeps its move buffers, killers and history from one root move and one
+    * move of the game to the next; its board holds whatever position it searched last, so
+    * callers copy the root onto it first (see Board.copy).
+    */
+    Searcher rootSearcher() {
+        return rootSearchers.get();
+    }
+
+    private ThreadLocal<Searcher> newRootSearchers() {
+        return new ThreadLocal<Searcher>() {
+            protected Searcher initialValue() {
+                return new Searcher(MachinePlayer.this, new Board());
+            }
+        };
+    }
+
+    /**Sets how many threads search each move. How the threads share the work is chosen
+    * with setParallelMode.
+    * @param threads the number of search threads, at least 1
+    */
+    public void setThreads(int threads) {
+        if (threads != this.threads && pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.threads = Math.max(1, threads);
+    }
+
+    /**Chooses how several search threads share the work.
+    * With ROOT_SPLIT the moves at the root are split across a fork/join pool, each searched
+    * on its own copy of the board; the move chosen is the same one a single thread would
+    * choose at the same depth.
+    * With LAZY_SMP the calling thread runs the normal search while threads - 1 helpers run
+    * their own iterative deepening on private copies of the board, in varied move orders and
+    * starting at staggered depths. The helpers only feed the shared transposition table,
+    * which lets the main search finish deeper iterations in the same time.
+    * @param mode ROOT_SPLIT or LAZY_SMP
+    */
+    public void setParallelMode(int mode) {
+        this.parallelMode = (mode == LAZY_SMP) ? LAZY_SMP : ROOT_SPLIT;
+    }
+
+    /**Returns what the search did for the last move chooseMove returned: nodes, leaf
+    * evaluations, network checks, cutoffs, transposition table hits and the time of each
+    * iteration. The counts include every search thread.
+    * @return the statistics of the last chooseMove; all zero before the first one
+    */
+    public SearchStats searchStats() {
+        return lastStats;
+    }
+
+    /**Returns the line the last chooseMove expects the game to follow: the move it played,
+    * the opponent's best reply, the answer to that and so on, as far as the search followed it.
+    * @return the moves, empty if the last move was not searched (a book move or a win at once)
+    */
+    public Move[] principalVariation() {
+        Move[] line = new Move[variationLength];
+        for (int i = 0; i < variationLength; i++) {
+            line[i] = PackedMove.toMove(variation[i]);
+        }
+        return line;
+    }
+
+    /**Sets the opening book chooseMove plays from. Positions not in the book are searched.
+    * By default players use the book named by the player.book system property, if any
+    * (see OpeningBook.defaultBook).
+    * @param book the book, or null to search every move
+    */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**Turns pondering on or off. A pondering player keeps searching after chooseMove returns:
+    * it guesses the opponent's reply (the second move of the principal variation, or the best
+    * reply stored in the transposition table) and searches its answer to it on a background thread until the
+    * opponent moves. If the guess was right, chooseMove goes on from the depth the pondering
+    * reached, and answers at once if that is as deep as it would search anyway; if not, the
+    * positions searched are still in the table.
+    * @param pondering true to search on the opponent's time
+    */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+        if (!pondering) {
+            stopPondering();
+            ponderHit = null;
+        }
+    }
+
+    /**Sets the weights evaluateBoard scores positions with. By default players use the
+    * weights file named by the player.weights system property, if any, and otherwise the
+    * hand-set weights (see EvaluationWeights.defaultWeights).
+    * @param weights the weights; must not change while the player searches
+    */
+    public void setWeights(EvaluationWeights weights) {
+        this.weights = weights;
+    }
+
+    /**Chooses how evaluateBoard scores positions.
+    * PATH_EVALUATION, the default, counts the goal areas each color has a chip in and walks
+    * the connection graph for each color's longest path, scored with the weights of setWeights.
+    * PATTERN_EVALUATION adds up values looked up per chip and per connection (see
+    * PatternEvaluator): no walk at all, so leaves are cheaper and the search goes deeper in the
+    * same time, at the price of a rougher idea of how close a network is.
+    * @param evaluation PATH_EVALUATION or PATTERN_EVALUATION
+    */
+    public void setEvaluation(int evaluation) {
+        this.evaluation = (evaluation == PATTERN_EVALUATION) ? PATTERN_EVALUATION : PATH_EVALUATION;
     }
 
     // Returns a new move by "this" player.  Internally records the move (updates
     // the internal game board) as a move by "this" player.
     public Move chooseMove() {
-        Move best = findBest(color);
+        stopPondering();  // the board may have been set up without opponentMove
+        Ponderer hit = ponderHit;
+        ponderHit = null;
+        variationLength = 0;
+        Move best = winningMove();
+        if (best == null) {
+            best = bookMove();
+        }
+        if (best == null && hit != null && hit.completedDepth() > 0) {
+            best = findBest(color, hit.completedDepth(), hit.bestMove(), hit.bestScore());
+        }
+        if (best == null) {
+            best = findBest(color);
+        }
         board.makeMove(best,color);
+        if (pondering) {
+            startPondering();
+        }
         return best;
     } 
 
@@ -57,6 +294,9 @@ public class MachinePlayer extends Player {
     // player.  This method allows your opponents to inform you of their moves.
     public boolean opponentMove(Move m) {
         if (board.isValidMove(m, opponentColor)){  // 检查对手的move是否valid
+          Ponderer p = ponderer;
+          stopPondering();
+          ponderHit = (p != null && p.guess() == PackedMove.fromMove(m)) ? p : null;
           board.makeMove(m,opponentColor);  // 更新到自己的board
           return true;
         }
@@ -70,90 +310,240 @@ public class MachinePlayer extends Player {
     // player to solve.
     public boolean forceMove(Move m) {
         if (board.isValidMove(m, color)){  // 检查自己的move是否valid
+          stopPondering();
+          ponderHit = null;
           board.makeMove(m,color);
           return true;
         }
         return false;
     }
 
-    /// GAME-TREE SEARCH MODULE
+    // Starts pondering the opponent's most likely reply, unless the game is over.
+    private void startPondering() {
+        if (board.hasNetwork(color) || board.hasNetwork(opponentColor)) {
+            return;
+        }
+        int guess = expectedReply();
+        if (guess == PackedMove.NONE) {
+            return;
+        }
+        int maxDepth = (timeBudget > 0 || nodeBudget > 0) ? MAX_SEARCH_DEPTH : Math.min(searchDepth, MAX_SEARCH_DEPTH);
+        ponderer = new Ponderer(this, board, guess, maxDepth);
+        ponderer.start();
+    }
 
-    /**  Assigns a score to a board on the game tree. It is part of the Game Tree Search Module. It
-    contains two important functions. It primarily checks if there is a network on the current board (by calling the and 
-    then assigns a score based on recursively evaluating the next boards to a certain depth in order to 
-    choose the next best possible move. It also needs to check if it is more advantageous to move forward for itself 
-    or to ruin the opponent's network in progress. 
-        * @param side is the color of the player who's moves we are currently looking for.
-        * @param depth is how many more turns the algorithm can look ahead for a network or to evaluate a score.
-        * @param alpha is the score the computer knows with certainty it can achieve. 表示电脑知道自己一定能够达到什么结局
-        * @param beta is the score the opponent knows with certainty it can achieve.  表示对手知道自己一定能够达到什么结局
-        * @return a Move which holds the highest scoring move. This is known as the BestMove.
-        */
-    private BestMove minimax(boolean side, int depth, double alpha, double beta){  // 这里就是不断变化side来进行推测后面几步的结果
-        BestMove best = new BestMove();
-        BestMove reply;
-
-          // 首先要检查是否已经有network了
-        if (board.hasNetwork(color)) {
-            best.score = 100.0;
-            return best;
-        }
-        if (board.hasNetwork(opponentColor)) { // 如果对手会形成network，那么score就是-100，AI会识别这种情况来避免
-            best.score = -100.0;
-            return best;
-        }
-        if (depth == 0){
-            best.score = evaluateBoard(board);  //search直到depth为0的时候，根据evaluate得到score，也就是预测双方在3个move之后的情况
-            return best;  // 如果有一方已经有network了，或者search depth为0，那就不需要做出move了
-        } 
-        if (side == COMPUTER){
-            best.score = alpha;
-        }else{
-            best.score = beta;
-        }
-
-        LinkedList<Move> moves = board.validMoves(color);  // 得到当前board下所有可能的valid moves
-        ListIterator<Move> it = moves.listIterator();
-        while (it.hasNext()){  // 在每一个递归程序的level里，遍历每一个valid move，找到当前子结点的best move返回
-                          //遍历每一个valid move
-            Move currentMove = it.next();
-            board.makeMove(currentMove, color); 
-            reply = minimax(!side, depth-1, alpha, beta); //一方下过一子后depth减一，以当前的move为开头，返回这个支线得到的bestmove
-            board.withdrawMove(currentMove, color);
-            // 这里computer努力增大score，opponent努力减小score
-            if ((side == COMPUTER) && (reply.score > best.score)){  // score越大，越有利于computer，更新更好的bestmove
-              best.move = currentMove; // 更新best move，直到返回给最上层
-              best.score = reply.score;
-              alpha = reply.score; // α only changes during a computer (MAX) move
-            }
-            else if ((side != COMPUTER) && (reply.score < best.score)){  // score越小，越有利于opponent， 这里是对手的score
-              best.move = currentMove;
-              best.score = reply.score;
-              beta = reply.score;  // β only changes during an opponent (MIN) move
-            }
-            if (alpha >= beta){  // 说明一定能够达到平局或者胜利  也就是这个方法其实是一直在找一个move，能够使自己成功率score大于对方
-              return best;  // 用到 Alpha-Beta pruning
+    // Halts the background search, if any.  Its results stay readable.
+    private void stopPondering() {
+        if (ponderer != null) {
+            ponderer.stop();
+            ponderer = null;
+        }
+    }
+
+    // The opponent's best reply according to the principal variation, the transposition table
+    // or, if neither has one, the first reply in search order.  PackedMove.NONE if the opponent
+    // cannot move.
+    private int expectedReply() {
+        if (variationLength > 1 && board.isValidMove(PackedMove.toMove(variation[1]), opponentColor)) {
+            return variation[1];
+        }
+        long entry = table.probe(board.hashKey(opponentColor));
+        if (entry != TranspositionTable.NONE) {
+            int move = TranspositionTable.move(entry);
+            if (move != PackedMove.NONE && board.isValidMove(PackedMove.toMove(move), opponentColor)) {
+                return move;
             }
         }
-        return best;
+        int[] replies = searcher.rootMoves(opponentColor, PackedMove.NONE);
+        return (replies.length > 0) ? replies[0] : PackedMove.NONE;
+    }
+
+    // A move that completes a network for this player right away, or null if there is none.
+    private Move winningMove() {
+        int[] wins = new int[Board.MAX_MOVES];
+        if (board.winningMoves(color, wins) == 0) {
+            return null;
+        }
+        lastStats = new SearchStats(MAX_SEARCH_DEPTH);  // nothing was searched
+        lastStats.setScore(Searcher.WIN_SCORE - 1);     // the network is complete one ply on
+        return PackedMove.toMove(wins[0]);
+    }
+
+    // The book move of the current position, or null if there is no book or the
+    // position is not in it.
+    private Move bookMove() {
+        if (book == null) {
+            return null;
+        }
+        int move = book.probe(board, color);
+        if (move == PackedMove.NONE) {
+            return null;
+        }
+        lastStats = new SearchStats(MAX_SEARCH_DEPTH);  // nothing was searched
+        return PackedMove.toMove(move);
+    }
 
+    // Called by each search thread every few hundred nodes with the nodes it searched since
+    // the last call: true once the search should stop, the deadline having passed or the node
+    // budget being spent, and it may.
+    boolean budgetSpent(int nodes) {
+        if (nodeBudget > 0 && budgetNodes.addAndGet(nodes) >= nodeBudget) {
+            return mayAbort;
+        }
+        return mayAbort && System.nanoTime() > deadline;
     }
 
-    /** This method uses minimax to find the best move possible. It uses alpha beta pruning to a certain depth, and evauluates each board, scoring it based on chance of winning
+    /// GAME-TREE SEARCH MODULE
+
+    /** This method uses minimax to find the best move possible. It uses alpha beta pruning to a certain depth, and evauluates each board, scoring it based on chance of winning.
+        * The search is iterative deepening: depth 1, 2, 3... until searchDepth is reached or, when a
+        * time budget is set, until the clock runs out. An iteration cut short by the clock is thrown
+        * away and the move of the last finished depth is played.
+        * Every iteration after the first starts with an aspiration window, a narrow window around the
+        * score of the previous one. If the score falls outside it, the window is widened on that side
+        * and the iteration searched again.
         * @param color is the color of the player who's moves we are currently looking for.
         * @returns a Move which holds the highest scoring move, and hence gives best chance of winning.
         */
     protected Move findBest(int color){  // 这里的推测是基于AI自己的findBest方法，来假设对手的best move来做出反应
-        int alpha = Integer.MIN_VALUE;  // 一开始假定自己胜的几率最低
-        int beta = Integer.MAX_VALUE;   // 假定对手胜的几率最高
-        BestMove bestMove;
+        return findBest(color, 0, PackedMove.NONE, 0);
+    }
+
+    /** Goes on with an iterative deepening search that was already searched to doneDepth,
+        * for instance by a Ponderer: the first iteration is doneDepth + 1.
+        * @param color is the color of the player who's moves we are currently looking for.
+        * @param doneDepth the last depth already searched, 0 if none.
+        * @param doneMove the best move at doneDepth, packed as in PackedMove; unused if doneDepth is 0.
+        * @param doneScore the score of doneMove.
+        * @returns the best move of the deepest iteration finished.
+        */
+    private Move findBest(int color, int doneDepth, int doneMove, int doneScore){
         boolean side = (this.color == color) ? true : false;
-        bestMove = minimax(side, searchDepth, alpha, beta);
-        return bestMove.move;
+        int maxDepth = (timeBudget > 0 || nodeBudget > 0) ? MAX_SEARCH_DEPTH : Math.min(searchDepth, MAX_SEARCH_DEPTH);
+        int best = doneMove;
+        variation[0] = doneMove;
+        variationLength = (doneDepth > 0) ? 1 : 0;
+        long start = System.nanoTime();
+        SearchStats stats = new SearchStats(MAX_SEARCH_DEPTH);
+        if (doneDepth >= maxDepth || (doneDepth > 0 && Searcher.isForced(doneScore))) {
+            stats.setScore(doneScore);
+            lastStats = stats;  // nothing left to search
+            return PackedMove.toMove(best);
+        }
+        deadline = (timeBudget > 0) ? System.nanoTime() + timeBudget * 1000000L : Long.MAX_VALUE;
+        budgetNodes.set(0);
+        timeUp = false;
+        mayAbort = doneDepth > 0;
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        searcher.clearStats();
+        if (threads > 1 && pool == null) {
+            pool = new ForkJoinPool(threads);
+        }
+        List<Searcher> helpers = new ArrayList<Searcher>();
+        List<ForkJoinTask<?>> helperTasks = new ArrayList<ForkJoinTask<?>>();
+        if (threads > 1 && parallelMode == LAZY_SMP && side == COMPUTER) {
+            for (int i = 1; i < threads; i++) {
+                final Searcher helper = new Searcher(this, new Board(board), i);
+                final int firstDepth = 1 + (i & 1);  // every other helper starts one ply deeper
+                final int lastDepth = maxDepth;
+                helpers.add(helper);
+                helperTasks.add(pool.submit(new Runnable() {
+                    public void run() {
+                        helper.deepen(firstDepth, lastDepth);
+                    }
+                }));
+            }
+        }
+        searcher.age();
+        int score = doneScore;  // the score of the last iteration finished
+        for (int depth = doneDepth + 1; depth <= maxDepth; depth++) {
+            // both the single-threaded and the root-split search take the root moves in this order
+            int[] rootMoves = searcher.rootMoves(side ? this.color : opponentColor, best);
+            long iterationStart = System.nanoTime();
+            long iterationNodes = 0;
+            int window = aspirationWindow();
+            int iterationScore;
+            ParallelRootSearch rootSearch = null;
+            int alpha = -Searcher.INFINITY;
+            int beta = Searcher.INFINITY;
+            if (depth > 1 && !Searcher.isForced(score)) {
+                alpha = score - window;
+                beta = score + window;
+            }
+            while (true) {
+                if (threads > 1 && parallelMode == ROOT_SPLIT && side == COMPUTER) {
+                    rootSearch = new ParallelRootSearch(this, board, rootMoves, alpha, beta);
+                    iterationScore = rootSearch.search(pool, depth);
+                    stats.add(rootSearch.stats());
+                    iterationNodes += rootSearch.stats().nodes();
+                } else {
+                    long nodesBefore = searcher.stats().nodes();
+                    iterationScore = searcher.searchRoot(side, rootMoves, depth, alpha, beta);
+                    iterationNodes += searcher.stats().nodes() - nodesBefore;
+                }
+                if (timeUp) {
+                    break;
+                }
+                // outside the window the score is only a bound: widen the window on that side
+                window *= 4;
+                if (iterationScore <= alpha && alpha > -Searcher.INFINITY) {
+                    alpha = Math.max(score - window, -Searcher.INFINITY);
+                } else if (iterationScore >= beta && beta < Searcher.INFINITY) {
+                    beta = Math.min(score + window, Searcher.INFINITY);
+                } else {
+                    break;
+                }
+            }
+            if (timeUp) {
+                break;
+            }
+            long iterationNanos = System.nanoTime() - iterationStart;
+            stats.recordDepth(depth, iterationNodes, iterationNanos, iterationScore);
+            SearchDepthEvent.emit(color, depth, iterationNodes, iterationNanos, iterationScore);
+            if (rootSearch != null) {
+                best = rootSearch.bestMove();
+                variationLength = rootSearch.principalVariation(variation);
+            } else {
+                best = searcher.bestMove();
+                variationLength = searcher.principalVariation(variation);
+            }
+            score = iterationScore;
+            mayAbort = true;
+            if (Searcher.isForced(score)) {  // a network is forced one way or the other
+                break;
+            }
+        }
+        for (Searcher helper : helpers) {
+            helper.halt();
+        }
+        for (ForkJoinTask<?> task : helperTasks) {
+            task.join();
+        }
+        stats.add(searcher.stats());
+        for (Searcher helper : helpers) {
+            stats.add(helper.stats());
+        }
+        if (stats.depth() == 0) {
+            stats.setScore(doneScore);  // every iteration was cut short; the move is doneMove's
+        }
+        stats.setNanos(System.nanoTime() - start);
+        lastStats = stats;
+        event.report(color, threads, stats);
+        return PackedMove.toMove(best);
     }
 
 
 
+    // Half the width of the first window around the previous iteration's score: what one more
+    // chip on a color's path is worth to the evaluation in use, in the search's integer units.
+    private int aspirationWindow() {
+        if (evaluation == PATTERN_EVALUATION) {
+            return 2 * PatternEvaluator.CONNECTION;  // a path chip brings about two connections
+        }
+        return Math.max(1, (int) Math.rint(weights.connection));
+    }
+
     /**
     * evaluateBoard gives the current Board a score. This score reflects how likely it is to win if it is positive 
     * and if it is negative, how likely the opponent is to win. 
@@ -161,10 +551,14 @@ public class MachinePlayer extends Player {
     * Minimax calls evaluateBoard after determining that the Board does not have a Network. It scores each board to represent the outcome. 
     * Scores closer to 100 mean the MachinePlayer is more likely to win and
     * scores closer to -100 mean the opponent is more likely to win.
+    * With PATTERN_EVALUATION (see setEvaluation) the Board must not have a Network: it is not checked.
     * @param b the Board object to be evaluated.
     * @return a double that determines the likelihood of winning. 
     */
-    private double evaluateBoard(Board b){  // 这个评估方法，目的是产生更多chips之间的connection
+    double evaluateBoard(Board b){  // 这个评估方法，目的是产生更多chips之间的connection
+        if (evaluation == PATTERN_EVALUATION) {
+            return PatternEvaluator.evaluate(b, this.color);
+        }
         double myScore;
         double opponentScore;
         double blackScore = 0.0;
@@ -176,36 +570,14 @@ public class MachinePlayer extends Player {
             return -100.0;
         }
 
-        // 检查四边的goal area，如果有一边有chip就+5
-        for (int i = 1; i < 7; i ++){
-            if(b.getSquare(i,0) == Board.WHITE){
-                whiteScore += 5.0;
-                break;
-            }
-        }
-        for (int i = 1; i < 7; i ++){
-            if(b.getSquare(i,7) == Board.WHITE){
-                whiteScore += 5.0;
-                break;
-            }
-        }   
-        for (int i = 1; i < 7; i ++){
-            if(b.getSquare(0,i) == Board.BLACK){
-                blackScore += 5.0;
-                break;
-            }
-        }
-        for (int i = 1; i < 7; i ++){
-            if(b.getSquare(7,i) == Board.BLACK){
-                blackScore += 5.0;
-                break;
-            }
-        }
-    
-        double basePoint = 10.0; // 每一个connection计为10分
+        // 检查四边的goal area，每一边有chip就加goalSide分
+        whiteScore += weights.goalSide * EvaluationWeights.goalSides(b, Board.WHITE);
+        blackScore += weights.goalSide * EvaluationWeights.goalSides(b, Board.BLACK);
+
+        double basePoint = weights.connection; // 每一个connection计的分
 
-        whiteScore += (double)(board.maxPathLength(Board.WHITE) * basePoint);
-        blackScore += (double)(board.maxPathLength(Board.BLACK) * basePoint);
+        whiteScore += (double)(b.maxPathLength(Board.WHITE) * basePoint);
+        blackScore += (double)(b.maxPathLength(Board.BLACK) * basePoint);
       
         // 先得到black和white的score，再来根据当前颜色赋值给myscore和opponentscore
         if (this.color == Board.WHITE) {
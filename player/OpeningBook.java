@@ -0,0 +1,155 @@
+/* OpeningBook.java */
+
+package player;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ *  Book moves for the first plies of a game, read from a file written by
+ *  OpeningBookGenerator.  The file is memory-mapped rather than read, so
+ *  opening it costs next to nothing and every player in the JVM can share the
+ *  same pages.
+ *
+ *  Positions are keyed by Board.canonicalKey, so one entry answers for all
+ *  eight symmetric images of a position; the move is stored in the canonical
+ *  frame and mapped back to the board it is asked for.
+ *
+ *  File layout, big-endian:
+ *    int   MAGIC
+ *    int   VERSION
+ *    int   number of entries
+ *    int   unused, 0
+ *    entries, sorted by key as signed longs:
+ *      long  canonical key of the position, side to move included
+ *      int   best move in the canonical frame, packed as in PackedMove
+ */
+public class OpeningBook {
+
+  public static final int MAGIC = 0x4E57424B;  // "NWBK"
+  public static final int VERSION = 1;
+
+  // system property naming the book every MachinePlayer uses, see defaultBook
+  public static final String BOOK_PROPERTY = "player.book";
+
+  private static final int HEADER_BYTES = 16;
+  private static final int ENTRY_BYTES = 12;
+
+  private static OpeningBook defaultBook;
+  private static boolean defaultBookLoaded;
+
+  private final ByteBuffer entries;  // only absolute gets, so threads can share it
+  private final int size;
+
+  private OpeningBook(ByteBuffer entries, int size) {
+    this.entries = entries;
+    this.size = size;
+  }
+
+  /**
+   *  Maps a book file into memory.
+   *  @param file a file written by OpeningBookGenerator.
+   *  @return the book.
+   *  @throws IOException if the file cannot be read or is not a book.
+   */
+  public static OpeningBook open(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long length = channel.size();
+      if (length < HEADER_BYTES) {
+        throw new IOException(file + " is not an opening book");
+      }
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);  // stays valid once closed
+      int size = buffer.getInt(8);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+          || size < 0 || length != HEADER_BYTES + (long) size * ENTRY_BYTES) {
+        throw new IOException(file + " is not an opening book of version " + VERSION);
+      }
+      return new OpeningBook(buffer, size);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   *  Returns the book named by the player.book system property, opened the first
+   *  time it is asked for.  A book that cannot be opened is reported on System.err
+   *  once; the players then search every move themselves.
+   *  @return the book, or null if the property is not set or the book is unusable.
+   */
+  public static synchronized OpeningBook defaultBook() {
+    if (!defaultBookLoaded) {
+      defaultBookLoaded = true;
+      String name = System.getProperty(BOOK_PROPERTY);
+      if (name != null) {
+        try {
+          defaultBook = open(new File(name));
+        } catch (IOException e) {
+          System.err.println("opening book not used: " + e.getMessage());
+        }
+      }
+    }
+    return defaultBook;
+  }
+
+  /**
+   *  Writes a book file.
+   *  @param file the file to write.
+   *  @param moves canonical keys and the best moves of their positions, in the
+   *  canonical frame.
+   */
+  public static void write(File file, Map<Long, Integer> moves) throws IOException {
+    SortedMap<Long, Integer> sorted = new TreeMap<Long, Integer>(moves);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(sorted.size());
+      out.writeInt(0);
+      for (Map.Entry<Long, Integer> e : sorted.entrySet()) {
+        out.writeLong(e.getKey());
+        out.writeInt(e.getValue());
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /** @return the number of positions in the book. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   *  Looks up the book move of a position.
+   *  @param board the position.
+   *  @param toMove the color of the side to move.
+   *  @return the move, packed as in PackedMove, or PackedMove.NONE if the position
+   *  is not in the book.
+   */
+  public int probe(Board board, int toMove) {
+    long key = board.canonicalKey(toMove);
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long k = entries.getLong(HEADER_BYTES + mid * ENTRY_BYTES);
+      if (k < key) {
+        low = mid + 1;
+      } else if (k > key) {
+        high = mid - 1;
+      } else {
+        int stored = entries.getInt(HEADER_BYTES + mid * ENTRY_BYTES + 8);
+        int t = Board.inverseSymmetry(board.canonicalSymmetry(toMove));
+        int move = Board.symmetricMove(stored, t);
+        // a key collision could name a move that does not fit this board
+        return board.isValidMove(PackedMove.toMove(move), toMove) ? move : PackedMove.NONE;
+      }
+    }
+    return PackedMove.NONE;
+  }
+
+}
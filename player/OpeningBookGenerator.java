@@ -0,0 +1,132 @@
+/* OpeningBookGenerator.java */
+
+package player;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ *  Builds an opening book (see OpeningBook) by searching the first plies of the
+ *  game offline, much deeper than a player could afford during a game.
+ *
+ *  For each color the book follows its own best move and every reply of the
+ *  opponent: every position of the first N plies where that color is to move,
+ *  reached by book moves for it and any moves for the opponent, is searched and
+ *  its best move stored.  Symmetric positions share one entry and are searched
+ *  once.
+ *
+ *  Usage: java player.OpeningBookGenerator file [plies [depth [threads]]]
+ *  The defaults are 4 plies searched to depth 5 on one thread.
+ */
+public class OpeningBookGenerator {
+
+  private final int plies;
+  private final int depth;
+  private final int threads;
+
+  private final Map<Long, Integer> book = new HashMap<Long, Integer>();  // canonical key -> canonical move
+  private final Set<Long> expanded = new HashSet<Long>();  // canonical keys already walked below
+  private final Board board = new Board();
+  private final int[][] moveBuffers;
+  // players[color] searches the book positions where color is to move, see bookMove
+  private final MachinePlayer[] players = new MachinePlayer[2];
+  private long started;
+
+  /**
+   *  @param plies positions up to this many plies into the game are put in the book.
+   *  @param depth the search depth of every book move.
+   *  @param threads search threads (see MachinePlayer.setThreads).
+   */
+  public OpeningBookGenerator(int plies, int depth, int threads) {
+    this.plies = plies;
+    this.depth = depth;
+    this.threads = threads;
+    this.moveBuffers = new int[plies][Board.MAX_MOVES];
+  }
+
+  /**
+   *  Searches the book positions of both colors.
+   *  @return canonical keys and their best moves in the canonical frame, as
+   *  OpeningBook.write takes them.
+   */
+  public Map<Long, Integer> generate() {
+    started = System.nanoTime();
+    try {
+      expanded.clear();
+      walk(0, Board.WHITE, Board.WHITE);
+      expanded.clear();
+      walk(0, Board.WHITE, Board.BLACK);
+    } finally {
+      for (int color = Board.BLACK; color <= Board.WHITE; color++) {
+        if (players[color] != null) {
+          players[color].setThreads(1);  // shuts down the player's pool
+          players[color] = null;
+        }
+      }
+    }
+    return book;
+  }
+
+  // Visits the position after ply moves, with toMove to play, for the book of bookColor.
+  private void walk(int ply, int toMove, int bookColor) {
+    if (ply == plies || board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)) {
+      return;
+    }
+    long key = board.canonicalKey(toMove);
+    if (!expanded.add(key)) {
+      return;  // a symmetric image of this position was walked already
+    }
+    int opponent = 1 - toMove;
+    if (toMove == bookColor) {
+      int move = bookMove(toMove, key);
+      board.makeMove(move, toMove);
+      walk(ply + 1, opponent, bookColor);
+      board.withdrawMove(move, toMove);
+    } else {
+      int[] moves = moveBuffers[ply];
+      int count = board.generateMoves(toMove, moves);
+      for (int i = 0; i < count; i++) {
+        board.makeMove(moves[i], toMove);
+        walk(ply + 1, opponent, bookColor);
+        board.withdrawMove(moves[i], toMove);
+      }
+    }
+  }
+
+  // The best move of the current position, searched unless the book has it already.
+  private int bookMove(int toMove, long key) {
+    int symmetry = board.canonicalSymmetry(toMove);
+    Integer known = book.get(key);
+    if (known != null) {
+      return Board.symmetricMove(known, Board.inverseSymmetry(symmetry));
+    }
+    MachinePlayer player = players[toMove];
+    if (player == null) {
+      player = new MachinePlayer(toMove, depth);
+      player.setOpeningBook(null);
+      player.setThreads(threads);
+      players[toMove] = player;
+    }
+    player.setPosition(board, toMove);  // forgets the last position's search
+    int move = PackedMove.fromMove(player.chooseMove());
+    book.put(key, Board.symmetricMove(move, symmetry));
+    if (book.size() % 100 == 0) {
+      System.err.printf("%d positions, %.0f s%n", book.size(), (System.nanoTime() - started) / 1e9);
+    }
+    return move;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: java player.OpeningBookGenerator file [plies [depth [threads]]]");
+      System.exit(2);
+    }
+    int plies = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+    int depth = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+    int threads = (args.length > 3) ? Integer.parseInt(args[3]) : 1;
+    Map<Long, Integer> book = new OpeningBookGenerator(plies, depth, threads).generate();
+    OpeningBook.write(new File(args[0]), book);
+    System.err.println(book.size() + " positions written to " + args[0]);
+  }
+
+}
@@ -0,0 +1,108 @@
+/* PackedMove.java */
+
+package player;
+
+/**
+ *  The search's own move representation: a move packed into an int, so that move
+ *  lists are plain int arrays and nothing is allocated while generating them.
+ *
+ *    bits  0-5   the old square of a STEP (unused for an ADD)
+ *    bits  6-11  the new square
+ *    bits 12-13  the move kind, Move.ADD or Move.STEP
+ *
+ *  Squares are numbered as in Board.square, x * 8 + y.  NONE (0) has kind
+ *  Move.QUIT.  Moves are turned into player.Move objects only where they cross
+ *  the Player interface.
+ */
+public class PackedMove {
+
+  public static final int NONE = 0;
+
+  public static int add(int to) {
+    return (Move.ADD << 12) | (to << 6);
+  }
+
+  public static int step(int from, int to) {
+    return (Move.STEP << 12) | (to << 6) | from;
+  }
+
+  public static int kind(int move) {
+    return move >>> 12;
+  }
+
+  public static int to(int move) {
+    return (move >>> 6) & 63;
+  }
+
+  public static int from(int move) {
+    return move & 63;
+  }
+
+  /**
+   *  Packs a Move.  The coordinates must be on the board.
+   *  @return the packed move, or NONE for a QUIT move.
+   */
+  public static int fromMove(Move m) {
+    if (m.moveKind == Move.ADD) {
+      return add(Board.square(m.x1, m.y1));
+    }
+    if (m.moveKind == Move.STEP) {
+      return step(Board.square(m.x2, m.y2), Board.square(m.x1, m.y1));
+    }
+    return NONE;
+  }
+
+  /**
+   *  Unpacks a move.
+   *  @return a new Move; a QUIT move for NONE.
+   */
+  public static Move toMove(int move) {
+    int to = to(move);
+    if (kind(move) == Move.ADD) {
+      return new Move(to >>> 3, to & 7);
+    }
+    if (kind(move) == Move.STEP) {
+      int from = from(move);
+      return new Move(to >>> 3, to & 7, from >>> 3, from & 7);
+    }
+    return new Move();
+  }
+
+  /**
+   *  Writes a move as text: an ADD as the two digits of its square, x then y ("34"),
+   *  a STEP as the old square, a dash and the new square ("21-34").
+   *  @return the text, or "none" for NONE.
+   */
+  public static String format(int move) {
+    int to = to(move);
+    if (kind(move) == Move.ADD) {
+      return "" + (to >>> 3) + (to & 7);
+    }
+    if (kind(move) == Move.STEP) {
+      int from = from(move);
+      return "" + (from >>> 3) + (from & 7) + "-" + (to >>> 3) + (to & 7);
+    }
+    return "none";
+  }
+
+  /**
+   *  Reads a move written by format.  Whether it is legal is not checked.
+   *  @return the packed move, or NONE if the text is not a move.
+   */
+  public static int parse(String s) {
+    if (s.length() == 2 && digit(s.charAt(0)) && digit(s.charAt(1))) {
+      return add(Board.square(s.charAt(0) - '0', s.charAt(1) - '0'));
+    }
+    if (s.length() == 5 && s.charAt(2) == '-' && digit(s.charAt(0)) && digit(s.charAt(1))
+        && digit(s.charAt(3)) && digit(s.charAt(4))) {
+      return step(Board.square(s.charAt(0) - '0', s.charAt(1) - '0'), Board.square(s.charAt(3) - '0', s.charAt(4) - '0'));
+    }
+    return NONE;
+  }
+
+  // a board coordinate, 0 to 7
+  private static boolean digit(char c) {
+    return c >= '0' && c <= '7';
+  }
+
+}
@@ -0,0 +1,150 @@
+/* ParallelRootSearch.java */
+
+package player;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *  Searches the moves at the root of the game tree in parallel.  Every root move
+ *  becomes a fork/join task, searched with the Searcher of the pool thread that
+ *  runs it (see MachinePlayer.rootSearcher) on that thread's copy of the board.
+ *  The first move is searched alone, then the others all at once.  The tasks
+ *  share the best score found so far, which is the alpha bound each new task
+ *  starts from; every move but the first is tried with a null window above that
+ *  bound first (see Searcher.searchRoot).
+ *
+ *  Ties are broken by position in the move list, as the single-threaded search
+ *  does: a move only replaces the current best if it scores higher, or scores the
+ *  same and comes earlier in the list.  A task whose move comes before the current
+ *  best therefore starts from a bound one below the best score, so that an equal
+ *  score still comes back exact.
+ */
+public class ParallelRootSearch {
+
+    private final MachinePlayer player;
+    private final Board root;
+    private final int[] moves;
+
+    private final int alpha;
+    private final int beta;
+    private int bestScore;
+    private int bestIndex;
+    private final int[] bestLine = new int[Searcher.MAX_PLY];  // principal variation of the best move
+    private int bestLineLength;
+    private final SearchStats stats = new SearchStats(0);  // the tasks' counters, added up
+
+    /**
+     *  Prepares a search of the player's move from the given position.
+     *  @param player the player to move.
+     *  @param root the position to search; it is copied, never modified.
+     *  @param moves the player's moves, packed as in PackedMove, in the order a single
+     *  thread would search them (see Searcher.rootMoves); ties go to the earlier move.
+     *  @param alpha the lower end of the window, as in Searcher.searchRoot.
+     *  @param beta the upper end of the window.
+     */
+    public ParallelRootSearch(MachinePlayer player, Board root, int[] moves, int alpha, int beta) {
+        this.player = player;
+        this.root = root;
+        this.moves = moves;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.bestScore = alpha;
+        this.bestIndex = moves.length;
+    }
+
+    /**
+     *  Searches every root move to the given depth.
+     *  @param pool the pool that runs the tasks.
+     *  @param depth the depth of the search, counting the root move.
+     *  @return the score of the best move, as Searcher.searchRoot returns it; see bestMove
+     *  and principalVariation for the move.  The result is meaningless if the player's
+     *  clock ran out during the search.
+     */
+    public int search(ForkJoinPool pool, final int depth) {
+        final List<RootMoveTask> tasks = new ArrayList<RootMoveTask>(moves.length);
+        for (int i = 0; i < moves.length; i++) {
+            tasks.add(new RootMoveTask(i, depth));
+        }
+        pool.invoke(new RecursiveAction() {
+            protected void compute() {
+                // the first move, usually the best, sets the bound the others are searched against
+                if (!tasks.isEmpty()) {
+                    tasks.get(0).invoke();
+                    invokeAll(tasks.subList(1, tasks.size()));
+                }
+            }
+        });
+
+        return Math.min(bestScore, beta);
+    }
+
+    /**
+     *  Returns the best move of the search, packed as in PackedMove, or PackedMove.NONE
+     *  if no move beat alpha.
+     */
+    public synchronized int bestMove() {
+        return (bestIndex < moves.length) ? moves[bestIndex] : PackedMove.NONE;
+    }
+
+    /**
+     *  Copies the principal variation of the best move, as Searcher.principalVariation does.
+     *  @return the number of moves copied, 0 if no move beat alpha.
+     */
+    public synchronized int principalVariation(int[] buffer) {
+        System.arraycopy(bestLine, 0, buffer, 0, bestLineLength);
+        return bestLineLength;
+    }
+
+    /** Returns the counters of every task of the last search, added up. */
+    public synchronized SearchStats stats() {
+        return stats;
+    }
+
+    // The alpha bound for the move at index: the best score so far, or just below it
+    // if this move would win a tie against the current best.
+    private synchronized int lowerBound(int index) {
+        return (bestIndex < index) ? bestScore : bestScore - 1;
+    }
+
+    private synchronized void addStats(SearchStats taskStats) {
+        stats.add(taskStats);
+    }
+
+    private synchronized void report(int index, int score, Searcher searcher) {
+        if (score > bestScore || (score == bestScore && index < bestIndex)) {
+            bestScore = score;
+            bestIndex = index;
+            bestLineLength = searcher.moveVariation(bestLine);
+        }
+    }
+
+    private class RootMoveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final int depth;
+
+        RootMoveTask(int index, int depth) {
+            this.index = index;
+            this.depth = depth;
+        }
+
+        protected void compute() {
+            int bound = lowerBound(index);
+            if (bound >= beta) {
+                return;  // another move already failed high
+            }
+            Searcher searcher = player.rootSearcher();
+            searcher.board.copy(root);
+            searcher.clearStats();
+            int score = searcher.searchRootMove(player.color, moves[index], depth, bound, beta, index > 0);
+            addStats(searcher.stats());
+            if (!player.timeUp) {
+                report(index, score, searcher);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/* PatternEvaluator.java */
+
+package player;
+
+/**
+ *  A static evaluation made only of table lookups, for the leaves of the search.
+ *  MachinePlayer uses it instead of evaluateBoard's longest-path walk when
+ *  setEvaluation(PATTERN_EVALUATION) is called.
+ *
+ *  A color's score is the sum, over its chips, of
+ *    SQUARE[color][sq]            where the chip stands;
+ *    the pair value of PAIR[color][a * 64 + b] for each connection a-b;
+ *    SHAPE[goal * 256 + mask]     for the directions the chip's connections leave
+ *                                 in (bit d for direction d, see Board.directionBetween);
+ *  plus GOAL for each of its goal areas it has a chip in.  The connections come
+ *  from the board's connection graph, and one PAIR entry gives both the value of
+ *  a connection and its direction, so a position costs two lookups per chip, one
+ *  per end of each connection and nothing else: no search of any kind, and no
+ *  branches on what the tables hold.  Board goes further and keeps the score by
+ *  delta, looking up only the terms a move changes, so a leaf costs nothing.
+ *
+ *  A network must turn at every chip it passes through and may use a goal area
+ *  only at its ends, which is what the tables reward: a chip whose connections
+ *  leave in two directions not on one line can carry a network, a connection
+ *  into a goal area is worth more than one between inner squares, and one
+ *  between two squares of the same goal area is worth nothing.  A connection is
+ *  worth about half as much as a chip of the longest path is to evaluateBoard,
+ *  and a network usually has five or six of them, so the two evaluations are on
+ *  about the same scale.
+ *
+ *  The positions the search evaluates never hold a network (it checks first),
+ *  so evaluate does not look for one.
+ */
+public class PatternEvaluator {
+
+    static final int GOAL = 5;            // per goal area the color has a chip in
+    static final int CONNECTION = 4;      // per connection between inner squares
+    static final int GOAL_CONNECTION = 6; // per connection with one end in a goal area
+    static final int TURN = 3;            // per inner chip a network could turn at
+    static final int ISOLATED = -2;       // per chip with no connection
+    static final int CENTER = 1;          // per chip on the 4x4 center squares
+
+    // SQUARE[color][sq], PAIR[color][a * 64 + b] and SHAPE[goal * 256 + mask] as above.
+    // A PAIR entry holds the bit of the direction from a to b in its low 8 bits and the
+    // value of the connection above them; the value is 0 unless a < b, so that adding
+    // the entries of both ends of a connection counts it once.
+    private static final byte[][] SQUARE = new byte[2][64];
+    private static final short[][] PAIR = new short[2][64 * 64];
+    // CONNECTION_VALUE[color][a * 64 + b] is the value of a connection a-b whatever the order
+    private static final byte[][] CONNECTION_VALUE = new byte[2][64 * 64];
+    private static final byte[] SHAPE = new byte[2 * 256];
+
+    static {
+        for (int color = Board.BLACK; color <= Board.WHITE; color++) {
+            long start = Board.goalStart(color);
+            long end = Board.goalEnd(color);
+            for (int sq = 0; sq < 64; sq++) {
+                int x = sq >>> 3;
+                int y = sq & 7;
+                if (x >= 2 && x <= 5 && y >= 2 && y <= 5) {
+                    SQUARE[color][sq] = CENTER;
+                }
+            }
+            for (int a = 0; a < 64; a++) {
+                for (int b = 0; b < 64; b++) {
+                    int d = Board.directionBetween(a, b);
+                    if (d < 0) {
+                        continue;  // never connected
+                    }
+                    long ends = (1L << a) | (1L << b);
+                    int value;
+                    if ((ends & start) == ends || (ends & end) == ends) {
+                        value = 0;  // no network joins two chips of one goal area
+                    } else if ((ends & (start | end)) != 0) {
+                        value = GOAL_CONNECTION;
+                    } else {
+                        value = CONNECTION;
+                    }
+                    PAIR[color][(a << 6) | b] = (short) (((a < b) ? value << 8 : 0) | (1 << d));
+                    CONNECTION_VALUE[color][(a << 6) | b] = (byte) value;
+                }
+            }
+        }
+        for (int mask = 0; mask < 256; mask++) {
+            boolean turn = false;
+            for (int d = 0; d < 8; d++) {
+                // a direction other than d and its opposite
+                if ((mask & (1 << d)) != 0 && (mask & ~((1 << d) | (1 << ((d + 4) & 7)))) != 0) {
+                    turn = true;
+                }
+            }
+            int value = (mask == 0) ? ISOLATED : 0;
+            SHAPE[mask] = (byte) (turn ? TURN : value);
+            SHAPE[256 + mask] = (byte) value;  // a network ends at a goal chip, it never turns there
+        }
+    }
+
+    /**
+     *  Scores a position without a network.  Board keeps each color's score up to
+     *  date as chips come and go (see Board.patternScore), so this reads two ints.
+     *  @param b the position.
+     *  @param color the side the score is for.
+     *  @return the score of color minus that of its opponent.
+     */
+    static int evaluate(Board b, int color) {
+        return b.patternScore(color) - b.patternScore(1 - color);
+    }
+
+    /**
+     *  Computes the score of one color from scratch, walking its chips and their
+     *  connections, for checking the running score Board keeps.
+     */
+    static int score(Board b, int color) {
+        long own = b.chipsOf(color);
+        long goalSquares = Board.goalStart(color) | Board.goalEnd(color);
+        byte[] square = SQUARE[color];
+        short[] pair = PAIR[color];
+        int score = goals(own, color);
+        for (long m = own; m != 0; m &= m - 1) {
+            int sq = Long.numberOfTrailingZeros(m);
+            int shape = (int) (goalSquares >>> sq & 1) << 8;
+            score += square[sq];
+            int links = 0;
+            int row = sq << 6;
+            for (long l = b.connectionsOf(sq); l != 0; l &= l - 1) {
+                links += pair[row | Long.numberOfTrailingZeros(l)];
+            }
+            // no chip has two connections in one direction, so the direction bits never carry
+            score += (links >> 8) + SHAPE[shape | (links & 0xFF)];
+        }
+        return score;
+    }
+
+    // The terms Board adds up by delta: the score is their sum, so a chip put down or
+    // taken off and each connection made or broken changes it by the terms involved.
+
+    /** The value of a chip of color on sq, apart from its shape. */
+    static int square(int color, int sq) {
+        return SQUARE[color][sq];
+    }
+
+    /** The goal area bonus of a color with the given chips. */
+    static int goals(long own, int color) {
+        return (((own & Board.goalStart(color)) != 0) ? GOAL : 0) + (((own & Board.goalEnd(color)) != 0) ? GOAL : 0);
+    }
+
+    /** The value of a connection between chips of color on squares a and b, in either order. */
+    static int connection(int color, int a, int b) {
+        return CONNECTION_VALUE[color][(a << 6) | b];
+    }
+
+    /** The value of a chip of the given shape index, goal bit and direction bits. */
+    static int shape(int shape) {
+        return SHAPE[shape];
+    }
+
+}
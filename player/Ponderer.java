@@ -0,0 +1,119 @@
+/* Ponderer.java */
+
+package player;
+
+/**
+ *  Searches on the opponent's time.  Once a MachinePlayer has played its move, a
+ *  Ponderer guesses the opponent's reply, plays it on a private copy of the board
+ *  and searches the player's answer to it on a background thread, one depth at a
+ *  time, until it is stopped or reaches its last depth.
+ *
+ *  Only the copy of the board and the Searcher belong to the background thread;
+ *  what it shares with the player is the transposition table, which needs no
+ *  locking.  So whatever the opponent actually plays, the positions searched are
+ *  left in the table.  If the guess was right, the player also takes over the move
+ *  and depth the Ponderer got to (see MachinePlayer.opponentMove).
+ */
+public class Ponderer implements Runnable {
+
+    private final MachinePlayer player;
+    private final Board board;
+    private final int guess;
+    private final int maxDepth;
+    private final Searcher searcher;
+    private final Thread thread;
+    private volatile boolean stopping;
+
+    // the last depth searched to the end, and its result
+    private int completedDepth;
+    private int bestMove = PackedMove.NONE;
+    private int bestScore;
+
+    /**
+     *  Prepares to ponder the given reply.
+     *  @param player the player whose move is searched.
+     *  @param position the position after the player's move; it is copied, never modified.
+     *  @param guess the opponent's expected reply, packed as in PackedMove.
+     *  @param maxDepth the depth of the last iteration.
+     */
+    public Ponderer(MachinePlayer player, Board position, int guess, int maxDepth) {
+        this.player = player;
+        this.board = new Board(position);
+        this.board.makeMove(guess, player.opponentColor);
+        this.guess = guess;
+        this.maxDepth = maxDepth;
+        this.searcher = new Searcher(player, board, 0, false);
+        this.thread = new Thread(this, "ponder");
+        this.thread.setDaemon(true);
+    }
+
+    /** Starts the search on the background thread. */
+    public void start() {
+        thread.start();
+    }
+
+    /** Halts the search and waits for the background thread to finish. */
+    public void stop() {
+        stopping = true;
+        searcher.halt();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;  // finish waiting, then let the caller see the interrupt
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void run() {
+        for (int depth = 1; depth <= maxDepth && !stopping; depth++) {
+            int[] moves = searcher.rootMoves(player.color, bestMove());
+            if (moves.length == 0) {
+                return;
+            }
+            int score = searcher.searchRoot(MachinePlayer.COMPUTER, moves, depth,
+                                            -Searcher.INFINITY, Searcher.INFINITY);
+            if (stopping) {
+                return;  // the iteration was cut short
+            }
+            record(depth, searcher.bestMove(), score);
+            if (Searcher.isForced(score)) {  // a network is forced one way or the other
+                return;
+            }
+        }
+    }
+
+    private synchronized void record(int depth, int move, int score) {
+        completedDepth = depth;
+        bestMove = move;
+        bestScore = score;
+    }
+
+    /** Returns the reply this Ponderer expects, packed as in PackedMove. */
+    public int guess() {
+        return guess;
+    }
+
+    /** Returns the last depth searched to the end, or 0 if none was. */
+    public synchronized int completedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     *  Returns the best move of the last finished depth, packed as in PackedMove, or
+     *  PackedMove.NONE if no depth was finished.
+     */
+    public synchronized int bestMove() {
+        return bestMove;
+    }
+
+    /** Returns the score of the last finished depth. */
+    public synchronized int bestScore() {
+        return bestScore;
+    }
+
+}
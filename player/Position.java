@@ -0,0 +1,104 @@
+/* Position.java */
+
+package player;
+
+/**
+ *  A position: the chips on the board and the side to move.  A container for
+ *  data, like Move: the fields are public.
+ *
+ *  Positions are written in a compact text notation: the eight rows, y = 0
+ *  first, separated by '/', then a space and the side to move.  A row lists its
+ *  squares from x = 0 to x = 7: 'w' for a white chip, 'b' for a black one and a
+ *  digit 1 to 8 for that many empty squares.  The side to move is 'w' or 'b'.
+ *  The empty board with white to move is "8/8/8/8/8/8/8/8 w"; a white chip on
+ *  (0, 3) and a black one on (4, 7) with white to move is "8/8/8/w7/8/8/8/4b3 w".
+ *  How many chips each side still has to add follows from the chips on the board,
+ *  and the side to move has to agree with it: white adds the first chip, so while
+ *  chips are being added white is to move when both sides have as many chips and
+ *  black when white has one more.  Once both have all ten, either may be to move.
+ */
+public class Position {
+
+    public final Board board;
+    public final int toMove;  // Board.WHITE or Board.BLACK
+
+    public Position(Board board, int toMove) {
+        this.board = board;
+        this.toMove = toMove;
+    }
+
+    /**
+     *  Reads a position in the text notation.  One pass over the characters; the
+     *  chips are then checked against the rules as in Board.withChips, and the
+     *  side to move against the number of chips of each side.
+     *  @throws IllegalArgumentException if the text is not a legal position.
+     */
+    public static Position parse(CharSequence text) {
+        long[] chips = new long[2];
+        int length = text.length();
+        int i = 0;
+        for (int y = 0; y < 8; y++) {
+            if (y > 0) {
+                if (i >= length || text.charAt(i) != '/') {
+                    throw new IllegalArgumentException("not a position: " + text);
+                }
+                i++;
+            }
+            int x = 0;
+            while (x < 8 && i < length) {
+                char c = text.charAt(i++);
+                if (c == 'w' || c == 'b') {
+                    chips[(c == 'w') ? Board.WHITE : Board.BLACK] |= 1L << Board.square(x, y);
+                    x++;
+                } else if (c >= '1' && c <= '8') {
+                    x += c - '0';
+                } else {
+                    throw new IllegalArgumentException("not a position: " + text);
+                }
+            }
+            if (x != 8) {
+                throw new IllegalArgumentException("not a position: " + text);
+            }
+        }
+        if (i + 2 != length || text.charAt(i) != ' ' || (text.charAt(i + 1) != 'w' && text.charAt(i + 1) != 'b')) {
+            throw new IllegalArgumentException("not a position: " + text);
+        }
+        int toMove = (text.charAt(i + 1) == 'w') ? Board.WHITE : Board.BLACK;
+        int white = Long.bitCount(chips[Board.WHITE]);
+        int black = Long.bitCount(chips[Board.BLACK]);
+        boolean whiteMay = white == black;
+        boolean blackMay = white == black + 1 || (white == 10 && black == 10);
+        if (!((toMove == Board.WHITE) ? whiteMay : blackMay)) {
+            throw new IllegalArgumentException("not a position: " + text + " (wrong side to move)");
+        }
+        return new Position(Board.withChips(chips[Board.BLACK], chips[Board.WHITE]), toMove);
+    }
+
+    /** Writes the position in the text notation. */
+    public String toString() {
+        StringBuilder sb = new StringBuilder(80);
+        for (int y = 0; y < 8; y++) {
+            if (y > 0) {
+                sb.append('/');
+            }
+            int empty = 0;
+            for (int x = 0; x < 8; x++) {
+                int square = board.getSquare(x, y);
+                if (square == Board.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                sb.append((square == Board.WHITE) ? 'w' : 'b');
+            }
+            if (empty > 0) {
+                sb.append((char) ('0' + empty));
+            }
+        }
+        return sb.append(' ').append((toMove == Board.WHITE) ? 'w' : 'b').toString();
+    }
+
+}
@@ -0,0 +1,123 @@
+/* Referee.java */
+
+package player;
+
+/**
+ *  Plays games of Network between two Players without a user interface.  The
+ *  referee keeps its own Board, asks the side to move for a move, checks it, and
+ *  passes it on to the other player as opponentMove, as the Network program does.
+ *
+ *  The rules enforced are those of Network: a move the rules do not allow, or a
+ *  QUIT move, loses the game; a move that completes a network wins it, unless it
+ *  completes a network for the opponent too, in which case the opponent wins.
+ *  Network has no draws; a game that reaches the referee's ply limit is stopped
+ *  and scored as one, so that two players stepping back and forth cannot run
+ *  forever.
+ */
+public class Referee {
+
+    public static final int DRAW = -1;  // the winner of a game stopped at the ply limit
+
+    private final int maxPlies;
+
+    /**
+     *  The record of one game.
+     */
+    public static class Game {
+        public int winner = DRAW;   // Board.WHITE, Board.BLACK or DRAW
+        public String reason;       // how the game ended: "network", "illegal move", "quit" or "ply limit"
+        public final int[] moves;   // packed as in PackedMove, white's first move first
+        public int plies;           // moves played, the opening included
+        public int openingPlies;    // moves given by the opening rather than chosen
+
+        // indexed by color: chooseMove calls, the time they took and, for
+        // MachinePlayers, the nodes they searched
+        public final int[] chosen = new int[2];
+        public final long[] nanos = new long[2];
+        public final long[] nodes = new long[2];
+
+        Game(int maxPlies) {
+            moves = new int[maxPlies];
+        }
+    }
+
+    /**
+     *  Creates a referee.
+     *  @param maxPlies the number of moves after which a game is stopped as a draw.
+     */
+    public Referee(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     *  Plays a game.  The players must be new, or at least agree with each other on
+     *  an empty board.
+     *  @param white the player with the first move.
+     *  @param black the other player.
+     *  @param opening moves, packed as in PackedMove, that are played for the players
+     *  (with forceMove and opponentMove) before they choose their own; white's first.
+     *  @return the record of the game.
+     *  @throws IllegalArgumentException if the opening breaks the rules.
+     *  @throws IllegalStateException if a player refuses a move the rules allow.
+     */
+    public Game play(Player white, Player black, int[] opening) {
+        Board board = new Board();
+        Player[] players = new Player[2];
+        players[Board.WHITE] = white;
+        players[Board.BLACK] = black;
+        Game game = new Game(maxPlies);
+        int color = Board.WHITE;
+
+        for (int move : opening) {
+            Move m = PackedMove.toMove(move);
+            if (!board.isValidMove(m, color)) {
+                throw new IllegalArgumentException("opening move " + m + " is not allowed");
+            }
+            board.makeMove(move, color);
+            game.moves[game.plies++] = move;
+            if (!players[color].forceMove(m) || !players[1 - color].opponentMove(m)) {
+                throw new IllegalStateException("a player refused opening move " + m);
+            }
+            color = 1 - color;
+        }
+        game.openingPlies = game.plies;
+
+        while (game.plies < maxPlies) {
+            Player mover = players[color];
+            long start = System.nanoTime();
+            Move m = mover.chooseMove();
+            game.nanos[color] += System.nanoTime() - start;
+            game.chosen[color]++;
+            if (mover instanceof MachinePlayer) {
+                game.nodes[color] += ((MachinePlayer) mover).searchStats().nodes();
+            }
+            if (m == null || m.moveKind == Move.QUIT) {
+                return end(game, 1 - color, "quit");
+            }
+            if (!board.isValidMove(m, color)) {
+                return end(game, 1 - color, "illegal move");
+            }
+            int move = PackedMove.fromMove(m);
+            board.makeMove(move, color);
+            game.moves[game.plies++] = move;
+            if (!players[1 - color].opponentMove(m)) {
+                throw new IllegalStateException("a player refused " + m + ", which the rules allow");
+            }
+            if (board.hasNetwork(1 - color)) {  // even if the mover completed one too
+                return end(game, 1 - color, "network");
+            }
+            if (board.hasNetwork(color)) {
+                return end(game, color, "network");
+            }
+            color = 1 - color;
+        }
+        return end(game, DRAW, "ply limit");
+    }
+
+    private static Game end(Game game, int winner, String reason) {
+        game.winner = winner;
+        game.reason = reason;
+        return game;
+    }
+
+}
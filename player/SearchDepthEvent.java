@@ -0,0 +1,50 @@
+/* SearchDepthEvent.java */
+
+package player;
+
+import jdk.jfr.*;
+
+/**
+ *  A Java Flight Recorder event for every iteration of the deepening that
+ *  completes, so that a recording shows where the time of a slow move went.
+ *  See SearchEvent for how to record.
+ */
+@Name("player.SearchDepth")
+@Label("Search Depth")
+@Category("Network")
+@Description("An iteration of a MachinePlayer's iterative deepening")
+public class SearchDepthEvent extends Event {
+
+    @Label("Color")
+    int color;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    @Description("Nodes the main search thread visited")
+    long nodes;
+
+    @Label("Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+
+    @Label("Score")
+    @Description("Score of the best move; see Searcher.WIN_SCORE for network scores")
+    int score;
+
+    /** Commits an event for a completed iteration if a recording has it enabled. */
+    static void emit(int color, int depth, long nodes, long nanos, int score) {
+        SearchDepthEvent event = new SearchDepthEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.color = color;
+        event.depth = depth;
+        event.nodes = nodes;
+        event.time = nanos;
+        event.score = score;
+        event.commit();
+    }
+
+}
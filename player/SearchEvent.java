@@ -0,0 +1,93 @@
+/* SearchEvent.java */
+
+package player;
+
+import jdk.jfr.*;
+
+/**
+ *  A Java Flight Recorder event for every move a MachinePlayer chooses, carrying
+ *  the move's SearchStats.  The event is cheap enough to leave on: one is created
+ *  per move, and its fields are only filled in when a recording wants it.
+ *  Record with, for example,
+ *
+ *    java -XX:StartFlightRecording=filename=search.jfr ...
+ *
+ *  and read the events with "jfr print --events player.Search search.jfr".
+ */
+@Name("player.Search")
+@Label("Search")
+@Category("Network")
+@Description("A MachinePlayer choosing a move")
+public class SearchEvent extends Event {
+
+    @Label("Color")
+    int color;
+
+    @Label("Threads")
+    int threads;
+
+    @Label("Depth")
+    @Description("Deepest iteration completed")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Leaf Evaluations")
+    long leafEvaluations;
+
+    @Label("Network Checks")
+    long networkChecks;
+
+    @Label("Beta Cutoffs")
+    long betaCutoffs;
+
+    @Label("First Move Cutoff Rate")
+    @Percentage
+    double firstMoveCutoffRate;
+
+    @Label("Table Probes")
+    long tableProbes;
+
+    @Label("Table Hits")
+    long tableHits;
+
+    @Label("Table Cutoffs")
+    @Description("Table hits whose score was used without searching")
+    long tableCutoffs;
+
+    @Label("Forced Wins")
+    @Description("Nodes where the side to move could complete a network at once")
+    long forcedWins;
+
+    @Label("Forced Losses")
+    @Description("Nodes where no move stopped the opponent completing a network")
+    long forcedLosses;
+
+    @Label("Effective Branching Factor")
+    double branchingFactor;
+
+    /** Ends the event and commits it with the figures of a finished search. */
+    void report(int color, int threads, SearchStats stats) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.color = color;
+        this.threads = threads;
+        this.depth = stats.depth();
+        this.nodes = stats.nodes();
+        this.leafEvaluations = stats.leafEvaluations();
+        this.networkChecks = stats.networkChecks();
+        this.betaCutoffs = stats.betaCutoffs();
+        this.firstMoveCutoffRate = stats.firstMoveCutoffRate();
+        this.tableProbes = stats.tableProbes();
+        this.tableHits = stats.tableHits();
+        this.tableCutoffs = stats.tableCutoffs();
+        this.forcedWins = stats.forcedWins();
+        this.forcedLosses = stats.forcedLosses();
+        this.branchingFactor = stats.effectiveBranchingFactor();
+        commit();
+    }
+
+}
@@ -0,0 +1,196 @@
+/* SearchStats.java */
+
+package player;
+
+/**
+ *  What a MachinePlayer's search did while choosing one move: how many
+ *  positions it visited and evaluated, how well alpha-beta pruned, how often the
+ *  transposition table helped and how long each iteration of the deepening took.
+ *  MachinePlayer.searchStats returns the figures of the last chooseMove.
+ *
+ *  Every search thread counts into its own SearchStats with plain increments, so
+ *  counting costs next to nothing; the player adds the threads' figures together
+ *  once the move is chosen.
+ */
+public class SearchStats {
+
+    long nodes;             // positions negamax was called on
+    long leafEvaluations;   // calls of evaluateBoard
+    long networkChecks;     // calls of Board.hasNetwork, including evaluateBoard's
+    long betaCutoffs;       // nodes whose move loop stopped at a cutoff
+    long firstMoveCutoffs;  // ... of which at the first move tried
+    long tableProbes;       // transposition table lookups
+    long tableHits;         // lookups that found the position
+    long tableCutoffs;      // hits whose score was used without searching
+    long forcedWins;        // nodes cut short because the side to move wins with one move
+    long forcedLosses;      // nodes cut short because no move stops the opponent's threat
+
+    // per completed iteration of the deepening, indexed by depth
+    private final long[] depthNodes;
+    private final long[] depthNanos;
+    private int depth;      // deepest completed iteration, 0 if none
+    private int score;      // score of the move chosen, see score()
+    private long nanos;     // wall-clock time of the whole search
+
+    /**
+     *  Creates empty statistics.
+     *  @param maxDepth the deepest iteration that may be recorded.
+     */
+    public SearchStats(int maxDepth) {
+        depthNodes = new long[maxDepth + 1];
+        depthNanos = new long[maxDepth + 1];
+    }
+
+    /** Adds the counters of another search thread to these. */
+    void add(SearchStats other) {
+        nodes += other.nodes;
+        leafEvaluations += other.leafEvaluations;
+        networkChecks += other.networkChecks;
+        betaCutoffs += other.betaCutoffs;
+        firstMoveCutoffs += other.firstMoveCutoffs;
+        tableProbes += other.tableProbes;
+        tableHits += other.tableHits;
+        tableCutoffs += other.tableCutoffs;
+        forcedWins += other.forcedWins;
+        forcedLosses += other.forcedLosses;
+    }
+
+    /** Resets every counter to zero. */
+    void clear() {
+        nodes = leafEvaluations = networkChecks = 0;
+        betaCutoffs = firstMoveCutoffs = 0;
+        tableProbes = tableHits = tableCutoffs = 0;
+        forcedWins = forcedLosses = 0;
+        java.util.Arrays.fill(depthNodes, 0L);
+        java.util.Arrays.fill(depthNanos, 0L);
+        depth = 0;
+        score = 0;
+        nanos = 0;
+    }
+
+    /** Records a completed iteration of the deepening and the score it found. */
+    void recordDepth(int depth, long nodes, long nanos, int score) {
+        this.depth = depth;
+        this.score = score;
+        depthNodes[depth] = nodes;
+        depthNanos[depth] = nanos;
+    }
+
+    void setScore(int score) {
+        this.score = score;
+    }
+
+    void setNanos(long nanos) {
+        this.nanos = nanos;
+    }
+
+    public long nodes() {
+        return nodes;
+    }
+
+    public long leafEvaluations() {
+        return leafEvaluations;
+    }
+
+    public long networkChecks() {
+        return networkChecks;
+    }
+
+    public long betaCutoffs() {
+        return betaCutoffs;
+    }
+
+    /** @return the share of cutoffs made by the first move tried, 0 if there were none. */
+    public double firstMoveCutoffRate() {
+        return (betaCutoffs == 0) ? 0.0 : (double) firstMoveCutoffs / betaCutoffs;
+    }
+
+    public long tableProbes() {
+        return tableProbes;
+    }
+
+    public long tableHits() {
+        return tableHits;
+    }
+
+    public long tableCutoffs() {
+        return tableCutoffs;
+    }
+
+    /** @return the nodes where the side to move could complete a network at once. */
+    public long forcedWins() {
+        return forcedWins;
+    }
+
+    /** @return the nodes where no move stopped the opponent completing a network next. */
+    public long forcedLosses() {
+        return forcedLosses;
+    }
+
+    /**
+     *  Returns the score of the move chosen, from the point of view of the player that
+     *  chose it: the score of the deepest completed iteration, in evaluateBoard's units,
+     *  or for a forced network (see Searcher.isForced) Searcher.WIN_SCORE minus the plies
+     *  until it is complete, negated if the opponent completes it.  0 for a book move.
+     */
+    public int score() {
+        return score;
+    }
+
+    /** @return the deepest iteration that completed, 0 if none did. */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     *  Returns the nodes the calling thread's search visited in one iteration.  Lazy
+     *  SMP helpers are not included; their work only shows in the totals.
+     *  @param depth an iteration depth, 1 to depth().
+     */
+    public long nodesAtDepth(int depth) {
+        return depthNodes[depth];
+    }
+
+    /** @return the wall-clock time an iteration took, in nanoseconds. */
+    public long nanosAtDepth(int depth) {
+        return depthNanos[depth];
+    }
+
+    /** @return the wall-clock time of the whole search, in nanoseconds. */
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     *  Returns the effective branching factor: how many times more nodes the deepest
+     *  completed iteration visited than the one before it.
+     *  @return the ratio, or 0 if fewer than two iterations completed.
+     */
+    public double effectiveBranchingFactor() {
+        if (depth < 2 || depthNodes[depth - 1] == 0) {
+            return 0.0;
+        }
+        return (double) depthNodes[depth] / depthNodes[depth - 1];
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("depth ").append(depth)
+          .append(", score ").append(score)
+          .append(", nodes ").append(nodes)
+          .append(", leaves ").append(leafEvaluations)
+          .append(", network checks ").append(networkChecks)
+          .append(", cutoffs ").append(betaCutoffs)
+          .append(String.format(" (%.0f%% first move)", 100.0 * firstMoveCutoffRate()))
+          .append(", table hits ").append(tableHits).append('/').append(tableProbes)
+          .append(", forced wins ").append(forcedWins)
+          .append(", forced losses ").append(forcedLosses)
+          .append(String.format(", branching %.2f", effectiveBranchingFactor()))
+          .append(String.format(", %.1f ms", nanos / 1e6));
+        for (int d = 1; d <= depth; d++) {
+            sb.append(String.format("%n  depth %d: %d nodes, %.1f ms", d, depthNodes[d], depthNanos[d] / 1e6));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,542 @@
+/* Searcher.java */
+
+package player;
+
+import java.util.*;
+
+/**
+ *  The game-tree search of a MachinePlayer, run on a Board of its own.  The
+ *  player owns the transposition table, the clock and the evaluation function;
+ *  a Searcher owns only the board it plays moves on and its SearchStats, so
+ *  several Searchers can work on copies of the same position on different threads.
+ *
+ *  Moves are searched best-first: the transposition table's move, then moves
+ *  into the player's own goal areas, then moves by the number of connections
+ *  they add, then the two killer moves of the ply, then moves by their history
+ *  score.  The killer and history tables belong to the Searcher.
+ *
+ *  A Searcher built with a nonzero variation breaks ordering ties in a rotated
+ *  order.  Lazy SMP helpers use this so that they spread out over the tree
+ *  instead of repeating the main search move for move.
+ */
+public class Searcher {
+
+    /**
+     *  The score of a network completed at the root of a search.  A network completed n
+     *  plies later scores WIN_SCORE - n for the side that completes it and -(WIN_SCORE - n)
+     *  for the other side, so that the search prefers the fastest win and the slowest loss.
+     *  Evaluated positions always score far less (see isForced).
+     */
+    public static final int WIN_SCORE = 1 << 20;
+    /** More than any score; the initial window is (-INFINITY, INFINITY). */
+    public static final int INFINITY = WIN_SCORE + 1;
+
+    // the clock and the node budget are checked once every CLOCK_CHECK_INTERVAL + 1 nodes
+    private static final int CLOCK_CHECK_INTERVAL = 255;
+    // more plies than any search goes deep (see MachinePlayer.MAX_SEARCH_DEPTH)
+    static final int MAX_PLY = 64;
+
+    // move ordering keys; a higher key is searched earlier
+    private static final int HASH_MOVE_KEY = Integer.MAX_VALUE;
+    private static final int GOAL_BONUS = 1 << 24;
+    private static final int CONNECTION_SHIFT = 20;   // per connection the move adds
+    private static final int FIRST_KILLER_BONUS = 3 << 18;
+    private static final int SECOND_KILLER_BONUS = 2 << 18;
+    private static final int HISTORY_LIMIT = (1 << 18) - 1;
+
+    protected final MachinePlayer player;
+    protected final Board board;
+    private final int color;
+    private final int opponentColor;
+    private final TranspositionTable table;
+    private final int variation;
+    private final boolean onClock;  // false if only halt stops this Searcher, see Ponderer
+    private volatile boolean halted;
+    private final SearchStats stats = new SearchStats(0);
+    private long networkChecksBefore;  // board.networkChecks when the stats were cleared
+    private int ply;  // distance from the position the current search started at
+
+    // two moves per ply that recently caused a beta cutoff there
+    private final int[][] killers = new int[MAX_PLY][2];
+    // history[to * 64 + from] grows with every cutoff a move causes.  An ADD uses from = 0,
+    // which is a corner and so never the old square of a STEP.
+    private final int[] history = new int[64 * 64];
+
+    // move list and ordering keys of each ply, allocated the first time a ply is reached
+    private final int[][] moveBuffers = new int[MAX_PLY][];
+    private final int[][] keyBuffers = new int[MAX_PLY][];
+    // the opponent's network-completing moves at each ply, see keepBlockingMoves
+    private final int[][] threatBuffers = new int[MAX_PLY][];
+
+    // Triangular principal variation table: pv[p * MAX_PLY + p .. p * MAX_PLY + pvEnd[p]) is
+    // the best line found from ply p on, the move at ply p first.
+    private final int[] pv = new int[MAX_PLY * MAX_PLY];
+    private final int[] pvEnd = new int[MAX_PLY];
+    // the line of the best move of the last searchRoot
+    private final int[] bestLine = new int[MAX_PLY];
+    private int bestLineLength;
+
+    /**
+     *  Creates a Searcher for the given player.
+     *  @param player the player whose table, clock and evaluation are used.
+     *  @param board the board this Searcher plays moves on; it is not copied.
+     */
+    public Searcher(MachinePlayer player, Board board) {
+        this(player, board, 0);
+    }
+
+    /**
+     *  Creates a Searcher whose move order differs from the plain one.
+     *  @param player the player whose table, clock and evaluation are used.
+     *  @param board the board this Searcher plays moves on; it is not copied.
+     *  @param variation 0 for the plain move order; other values rotate it.
+     */
+    public Searcher(MachinePlayer player, Board board, int variation) {
+        this(player, board, variation, true);
+    }
+
+    /**
+     *  Creates a Searcher that may run while the player is not choosing a move.
+     *  @param player the player whose table and evaluation are used.
+     *  @param board the board this Searcher plays moves on; it is not copied.
+     *  @param variation 0 for the plain move order; other values rotate it.
+     *  @param onClock false if the player's clock is neither read nor set, so that only
+     *  halt stops the search.
+     */
+    public Searcher(MachinePlayer player, Board board, int variation, boolean onClock) {
+        this.variation = variation;
+        this.onClock = onClock;
+        this.player = player;
+        this.board = board;
+        this.color = player.color;
+        this.opponentColor = player.opponentColor;
+        this.table = player.table;
+    }
+
+    /** Makes a running search unwind as soon as possible.  Safe to call from any thread. */
+    public void halt() {
+        halted = true;
+    }
+
+    private boolean stopped() {
+        return halted || (onClock && player.timeUp);
+    }
+
+    /**
+     *  Returns what this Searcher did since clearStats.  Only per-search counters are
+     *  kept; the player records the iterations itself.
+     */
+    public SearchStats stats() {
+        stats.networkChecks = board.networkChecks - networkChecksBefore;
+        return stats;
+    }
+
+    /** Starts counting from zero. */
+    public void clearStats() {
+        stats.clear();
+        networkChecksBefore = board.networkChecks;
+    }
+
+    /**
+     *  Searches the machine player's move at depth firstDepth, firstDepth + 1, ...
+     *  up to maxDepth, until halted or out of time.  Only the transposition table
+     *  keeps the results; this is the loop a Lazy SMP helper thread runs.
+     *  @param firstDepth the depth of the first iteration.
+     *  @param maxDepth the depth of the last iteration.
+     */
+    public void deepen(int firstDepth, int maxDepth) {
+        ply = 0;
+        for (int depth = firstDepth; depth <= maxDepth && !stopped(); depth++) {
+            negamax(color, depth, -INFINITY, INFINITY);
+        }
+    }
+
+    /**
+     *  Orders the moves of the side to move at the root of a search.  Only the previous
+     *  iteration's best move and the static ordering keys are used, never the killer or
+     *  history tables, so that the order depends on the position alone and every thread
+     *  of a parallel search sees the same list.
+     *  @param toMove the color of the side to move.
+     *  @param previousBest the best move of the previous iteration, or PackedMove.NONE.
+     *  @return the valid moves packed as in PackedMove, best candidates first.
+     */
+    public int[] rootMoves(int toMove, int previousBest) {
+        ply = 0;
+        int count = orderMoves(toMove, previousBest, false, true);
+        if (count == 0) {  // no move stops the opponent's network; search them all anyway
+            count = orderMoves(toMove, previousBest, false, false);
+        }
+        return Arrays.copyOf(moveBuffers[0], count);
+    }
+
+    /**
+     *  Searches a list of root moves to the given depth within the window (alpha, beta).
+     *  The first move gets the whole window; every later one is first searched with a
+     *  null window just above the best score so far, and only searched again with the
+     *  whole window if it turns out better.  The best move and the line the search
+     *  expects after it are left for bestMove and principalVariation.
+     *  @param side COMPUTER if the machine player is to move.
+     *  @param moves the moves to search, in order (see rootMoves).
+     *  @param depth the depth of the search, counting the root move.
+     *  @param alpha the score the side to move is already sure of.
+     *  @param beta the score above which the opponent would avoid this position.
+     *  @return the score of the best move for the side to move; the first of several
+     *  equal moves wins.  A score of at most alpha means no move beat alpha (bestMove is
+     *  then PackedMove.NONE), one of at least beta that the search stopped at a move this
+     *  good.  Meaningless if the search was stopped.
+     */
+    public int searchRoot(boolean side, int[] moves, int depth, int alpha, int beta) {
+        int toMove = (side == MachinePlayer.COMPUTER) ? color : opponentColor;
+        bestLineLength = 0;
+        for (int i = 0; i < moves.length && alpha < beta; i++) {
+            int score = searchRootMove(toMove, moves[i], depth, alpha, beta, i > 0);
+            if (stopped()) {
+                break;
+            }
+            if (score > alpha) {
+                bestLineLength = moveVariation(bestLine);
+                alpha = score;
+            }
+        }
+        return Math.min(alpha, beta);
+    }
+
+    /**
+     *  Returns the best move of the last searchRoot, packed as in PackedMove, or
+     *  PackedMove.NONE if no move beat alpha.
+     */
+    public int bestMove() {
+        return (bestLineLength > 0) ? bestLine[0] : PackedMove.NONE;
+    }
+
+    /**
+     *  Copies the principal variation of the last searchRoot: its best move, the reply
+     *  the search expects to it, the answer to that and so on, as far as the search saw.
+     *  @param buffer receives the moves, packed as in PackedMove; MAX_PLY long is enough.
+     *  @return the number of moves copied, 0 if no move beat alpha.
+     */
+    public int principalVariation(int[] buffer) {
+        System.arraycopy(bestLine, 0, buffer, 0, bestLineLength);
+        return bestLineLength;
+    }
+
+    /**
+     *  Copies the line of the last searchRootMove: the move searched and the line the
+     *  search expects after it.  Only meaningful if the move's score was inside the window.
+     *  @param buffer receives the moves, packed as in PackedMove; MAX_PLY long is enough.
+     *  @return the number of moves copied.
+     */
+    public int moveVariation(int[] buffer) {
+        System.arraycopy(pv, 0, buffer, 0, pvEnd[0]);
+        return pvEnd[0];
+    }
+
+    /**
+     *  Searches one move at the root of a search.
+     *  @param toMove the color of the side to move at the root.
+     *  @param move the move, packed as in PackedMove.
+     *  @param depth the depth of the search, counting the root move.
+     *  @param alpha the score the move has to beat.
+     *  @param beta the upper end of the window.
+     *  @param nullWindow true to try the window (alpha, alpha + 1) first.
+     *  @return the score of the move for toMove, clamped to [alpha, beta]; meaningless
+     *  if the search was stopped.
+     */
+    public int searchRootMove(int toMove, int move, int depth, int alpha, int beta, boolean nullWindow) {
+        ply = 0;
+        board.makeMove(move, toMove);
+        ply++;
+        int score;
+        if (nullWindow && beta - alpha > 1) {
+            score = -negamax(1 - toMove, depth - 1, -alpha - 1, -alpha);
+            if (score > alpha && !stopped()) {  // better than the best so far; find out by how much
+                score = -negamax(1 - toMove, depth - 1, -beta, -alpha);
+            }
+        } else {
+            score = -negamax(1 - toMove, depth - 1, -beta, -alpha);
+        }
+        ply--;
+        board.withdrawMove(move, toMove);
+        updateVariation(move);
+        return score;
+    }
+
+    /**
+     *  Halves the history scores and forgets the killer moves, so that what was learned
+     *  searching earlier moves of the game still counts but fades out.
+     */
+    public void age() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+        for (int[] k : killers) {
+            k[0] = PackedMove.NONE;
+            k[1] = PackedMove.NONE;
+        }
+    }
+
+    /**
+     *  Generates the moves of the current ply into its buffer and sorts them best
+     *  candidate first.  The sort is stable, so moves with equal keys stay in the order
+     *  they were generated (rotated by the variation, if any).  With blockThreats, moves
+     *  that leave the opponent a network next move are dropped first.
+     *  @return the number of moves in moveBuffers[ply]; 0 if blockThreats dropped them all.
+     */
+    private int orderMoves(int toMove, int hashMove, boolean useKillersAndHistory, boolean blockThreats) {
+        if (moveBuffers[ply] == null) {
+            moveBuffers[ply] = new int[Board.MAX_MOVES];
+            keyBuffers[ply] = new int[Board.MAX_MOVES];
+        }
+        int[] moves = moveBuffers[ply];
+        int[] keys = keyBuffers[ply];
+        int count = board.generateMoves(toMove, moves);
+        if (variation != 0 && count > 1) {
+            rotate(moves, count, (variation * (ply + 1)) % count);
+        }
+        if (blockThreats) {
+            count = keepBlockingMoves(toMove, count);
+        }
+        for (int i = 0; i < count; i++) {
+            int m = moves[i];
+            int key = orderKey(m, toMove, hashMove, useKillersAndHistory);
+            int j = i;
+            while (j > 0 && keys[j - 1] < key) {  // insertion sort, highest key first
+                keys[j] = keys[j - 1];
+                moves[j] = moves[j - 1];
+                j--;
+            }
+            keys[j] = key;
+            moves[j] = m;
+        }
+        return count;
+    }
+
+    /**
+     *  If the opponent of toMove threatens to complete a network with its next move, drops
+     *  every move of the current ply's list that does not stop all such threats.  The
+     *  remaining moves keep their order.
+     *  @return the number of moves left in moveBuffers[ply]: count if there is no threat,
+     *  0 if no move stops it.
+     */
+    private int keepBlockingMoves(int toMove, int count) {
+        if (threatBuffers[ply] == null) {
+            threatBuffers[ply] = new int[Board.MAX_MOVES];
+        }
+        int[] threats = threatBuffers[ply];
+        int threatCount = board.networkMoves(1 - toMove, threats);
+        if (threatCount == 0) {
+            return count;
+        }
+        return board.blockingMoves(toMove, moveBuffers[ply], count, threats, threatCount);
+    }
+
+    // rotates a[0..n) left by k places
+    private static void rotate(int[] a, int n, int k) {
+        reverse(a, 0, k);
+        reverse(a, k, n);
+        reverse(a, 0, n);
+    }
+
+    private static void reverse(int[] a, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    private int orderKey(int m, int toMove, int hashMove, boolean useKillersAndHistory) {
+        if (m == hashMove) {
+            return HASH_MOVE_KEY;
+        }
+        int key = 0;
+        if (board.isGoalSquare(PackedMove.to(m), toMove)) {
+            key += GOAL_BONUS;
+        }
+        int gain = board.connectionGain(m, toMove);
+        if (gain > 0) {
+            key += gain << CONNECTION_SHIFT;
+        }
+        if (useKillersAndHistory) {
+            if (m == killers[ply][0]) {
+                key += FIRST_KILLER_BONUS;
+            } else if (m == killers[ply][1]) {
+                key += SECOND_KILLER_BONUS;
+            }
+            key += history[historyIndex(m)];
+        }
+        return key;
+    }
+
+    // Remembers a move that caused a beta cutoff at the current ply.
+    private void recordCutoff(int m, int depth) {
+        if (m != killers[ply][0]) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = m;
+        }
+        int i = historyIndex(m);
+        history[i] = Math.min(history[i] + depth * depth, HISTORY_LIMIT);
+    }
+
+    private static int historyIndex(int m) {
+        return m & 0xFFF;  // the to and from squares of the packed move
+    }
+
+    /**  Assigns a score to a board on the game tree. It is part of the Game Tree Search Module.
+    It first checks if there is a network on the current board, then scores the board by
+    recursively searching the moves of the side to move to a certain depth. This is a negamax
+    principal variation search: scores are always from the point of view of the side to move,
+    the first (best ordered) move is searched with the whole window and every other move only
+    with a null window, to prove it is no better; a move that fails that test is searched again.
+    The search fails hard: scores outside the window come back as alpha or beta.
+        * @param toMove the color of the side to move.
+        * @param depth is how many more turns the algorithm can look ahead for a network or to evaluate a score.
+        * @param alpha is the score the side to move knows with certainty it can achieve. 表示自己一定能够达到什么结局
+        * @param beta is the score the opponent lets the side to move achieve at most.  表示对手允许自己最多达到什么结局
+        * @return the score of the position for toMove, clamped to [alpha, beta].
+        */
+    protected int negamax(int toMove, int depth, int alpha, int beta){
+        if ((++stats.nodes & CLOCK_CHECK_INTERVAL) == 0 && onClock && player.budgetSpent(CLOCK_CHECK_INTERVAL + 1)) {
+            player.timeUp = true;
+        }
+        pvEnd[ply] = ply;  // no line below this node yet
+        if (stopped()) {
+            return alpha;  // the result is discarded by findBest
+        }
+
+        // 首先要检查是否已经有network了. If the last move completed both networks, the side
+        // that made it loses.
+        if (board.hasNetwork(toMove)) {
+            return clamp(WIN_SCORE - ply, alpha, beta);
+        }
+        if (board.hasNetwork(1 - toMove)) {
+            return clamp(-WIN_SCORE + ply, alpha, beta);
+        }
+        if (depth == 0){
+            stats.leafEvaluations++;
+            // evaluateBoard scores for the machine player, in fractions once the weights are tuned:
+            // round to the nearest unit, halves to even, so the two sides' scores stay opposite
+            int score = (int) Math.rint(player.evaluateBoard(board));
+            return clamp((toMove == color) ? score : -score, alpha, beta);
+        }
+        long key = board.hashKey(toMove);
+        long entry = table.probe(key);
+        int hashMove = PackedMove.NONE;
+        stats.tableProbes++;
+        if (entry != TranspositionTable.NONE) {
+            stats.tableHits++;
+            hashMove = TranspositionTable.move(entry);  // best move of an earlier, maybe shallower, search
+        }
+        if (entry != TranspositionTable.NONE && TranspositionTable.depth(entry) >= depth) {
+            int score = fromTable(TranspositionTable.score(entry));
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                stats.tableCutoffs++;
+                return clamp(score, alpha, beta);  // this position was already searched through another move order
+            }
+        }
+
+        if (board.winningMoves(toMove, null) > 0) {  // the side to move completes a network right away
+            stats.forcedWins++;
+            int score = WIN_SCORE - ply - 1;
+            table.store(key, depth, TranspositionTable.EXACT, toTable(score), PackedMove.NONE);
+            return clamp(score, alpha, beta);
+        }
+
+        int count = orderMoves(toMove, hashMove, true, true);  // 得到当前board下所有可能的valid moves
+        if (count == 0) {  // the opponent completes a network next move whatever we do
+            stats.forcedLosses++;
+            int score = -WIN_SCORE + ply + 2;
+            table.store(key, depth, TranspositionTable.EXACT, toTable(score), PackedMove.NONE);
+            return clamp(score, alpha, beta);
+        }
+        int alphaOrig = alpha;
+        int bestMove = PackedMove.NONE;
+        int[] moves = moveBuffers[ply];
+        for (int i = 0; i < count; i++){  // 在每一个递归程序的level里，遍历每一个valid move，找到当前子结点的best move
+            int currentMove = moves[i];
+            board.makeMove(currentMove, toMove);
+            ply++;
+            int score;
+            if (i == 0) {
+                score = -negamax(1 - toMove, depth - 1, -beta, -alpha);
+            } else {
+                score = -negamax(1 - toMove, depth - 1, -alpha - 1, -alpha);  // 只证明这个move不比当前best好
+                if (score > alpha && score < beta && !stopped()) {
+                    score = -negamax(1 - toMove, depth - 1, -beta, -alpha);
+                }
+            }
+            ply--;
+            board.withdrawMove(currentMove, toMove);
+            if (stopped()) {
+                return alpha;  // don't store a half-searched node in the table
+            }
+            if (score > alpha) {
+                bestMove = currentMove;  // 更新best move
+                alpha = score;
+                updateVariation(currentMove);
+            }
+            if (alpha >= beta){  // 对手不会让局面走到这里
+              recordCutoff(currentMove, depth);
+              stats.betaCutoffs++;
+              if (i == 0) {
+                  stats.firstMoveCutoffs++;
+              }
+              table.store(key, depth, TranspositionTable.LOWER_BOUND, toTable(beta), bestMove);
+              return beta;  // 用到 Alpha-Beta pruning
+            }
+        }
+
+        // alpha is exact only if some move raised it; otherwise it is only an upper bound
+        int bound = (alpha > alphaOrig) ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        table.store(key, depth, bound, toTable(alpha), bestMove);
+        return alpha;
+
+    }
+
+    /**
+     *  Tells whether a score says that a network is forced, for either side.
+     *  @param score a score returned by the search.
+     */
+    public static boolean isForced(int score) {
+        return Math.abs(score) > WIN_SCORE - MAX_PLY;
+    }
+
+    // Makes the line of the current ply the given move followed by the line of the ply below.
+    private void updateVariation(int move) {
+        int from = ply * MAX_PLY + ply;
+        int child = from + MAX_PLY + 1;
+        int end = Math.max(pvEnd[ply + 1], ply + 1);
+        pv[from] = move;
+        System.arraycopy(pv, child, pv, from + 1, end - ply - 1);
+        pvEnd[ply] = end;
+    }
+
+    private static int clamp(int score, int alpha, int beta) {
+        return (score <= alpha) ? alpha : (score >= beta) ? beta : score;
+    }
+
+    // Network scores in the table count plies from the stored position, not from the root.
+    private int toTable(int score) {
+        if (score > WIN_SCORE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score < -WIN_SCORE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private int fromTable(int score) {
+        if (score > WIN_SCORE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score < -WIN_SCORE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+}
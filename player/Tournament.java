@@ -0,0 +1,398 @@
+/* Tournament.java */
+
+package player;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *  Plays a match between two MachinePlayer configurations on every core, without
+ *  the Network user interface, and reports how much stronger the first one is.
+ *
+ *  Games are played in pairs: both games of a pair start from the same random
+ *  opening, with the colors swapped, so that neither side profits from a lucky
+ *  opening.  The report gives the score, the Elo difference with its 95% error
+ *  bar, the time and nodes per move of each side and, if asked for, a sequential
+ *  probability ratio test that stops the match as soon as it can tell whether the
+ *  first configuration is elo0 or elo1 Elo stronger.
+ *
+ *  Usage: java player.Tournament [options] configA configB
+ *  A configuration is a comma-separated list of settings, for instance
+ *  "depth=4,time=100,threads=2,mode=smp,ponder=true,book=false"; see Entrant.
+ *  Options:
+ *    -games N       games to play, rounded up to whole pairs (default 100)
+ *    -threads N     games played at once (default: one per core)
+ *    -opening N     random plies before the players take over (default 4)
+ *    -plies N       ply limit after which a game is a draw (default 200)
+ *    -seed N        seed of the random openings (default 1)
+ *    -sprt E0,E1    stop as soon as the test accepts elo0 or elo1
+ *    -record FILE   add every game to a game record file (see GameRecordWriter),
+ *                   with player id 0 for configA and 1 for configB
+ */
+public class Tournament {
+
+    // error probabilities of the sequential test, both 5%
+    private static final double SPRT_ALPHA = 0.05;
+    private static final double SPRT_BETA = 0.05;
+
+    private final Entrant a;
+    private final Entrant b;
+    private int games = 100;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int openingPlies = 4;
+    private int maxPlies = 200;
+    private long seed = 1;
+    private boolean sprt;
+    private double elo0;
+    private double elo1;
+    private File recordFile;
+    private GameRecordWriter recorder;
+
+    // results, from a's point of view; guarded by this
+    private int wins;
+    private int draws;
+    private int losses;
+    private final int[] chosen = new int[2];    // indexed 0 for a, 1 for b
+    private final long[] nanos = new long[2];
+    private final long[] nodes = new long[2];
+    private volatile boolean decided;           // the sequential test has stopped the match
+
+    /**
+     *  A MachinePlayer configuration.  Settings, all optional:
+     *    depth=N      search depth, or the depth limit with a time budget (default 3)
+     *    time=MS      time budget per move in milliseconds (default 0, fixed depth)
+     *    threads=N    search threads per player (default 1)
+     *    mode=M       root or smp, see MachinePlayer.setParallelMode (default root)
+     *    ponder=B     search on the opponent's time (default false)
+     *    book=B       use the default opening book, if any (default true)
+     *    weights=FILE evaluation weights written by Tuner (default: see EvaluationWeights)
+     *    eval=E       path or pattern, see MachinePlayer.setEvaluation (default path)
+     */
+    public static class Entrant {
+        private final String spec;
+        private int depth = 3;
+        private long time;
+        private int threads = 1;
+        private int mode = MachinePlayer.ROOT_SPLIT;
+        private boolean ponder;
+        private boolean book = true;
+        private EvaluationWeights weights = EvaluationWeights.defaultWeights();
+        private int evaluation = MachinePlayer.PATH_EVALUATION;
+
+        /**
+         *  Reads a configuration.
+         *  @throws IllegalArgumentException if a setting is unknown or its value is bad,
+         *  or a weights file cannot be read.
+         */
+        public Entrant(String spec) {
+            this.spec = spec;
+            for (String setting : spec.split(",")) {
+                if (setting.isEmpty()) {
+                    continue;
+                }
+                int eq = setting.indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("setting without a value: " + setting);
+                }
+                String name = setting.substring(0, eq);
+                String value = setting.substring(eq + 1);
+                if (name.equals("depth")) {
+                    depth = Integer.parseInt(value);
+                } else if (name.equals("time")) {
+                    time = Long.parseLong(value);
+                } else if (name.equals("threads")) {
+                    threads = Integer.parseInt(value);
+                } else if (name.equals("mode")) {
+                    if (value.equals("root")) {
+                        mode = MachinePlayer.ROOT_SPLIT;
+                    } else if (value.equals("smp")) {
+                        mode = MachinePlayer.LAZY_SMP;
+                    } else {
+                        throw new IllegalArgumentException("mode must be root or smp: " + value);
+                    }
+                } else if (name.equals("ponder")) {
+                    ponder = Boolean.parseBoolean(value);
+                } else if (name.equals("book")) {
+                    book = Boolean.parseBoolean(value);
+                } else if (name.equals("weights")) {
+                    try {
+                        weights = EvaluationWeights.load(new File(value));
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException(e.getMessage());
+                    }
+                } else if (name.equals("eval")) {
+                    if (value.equals("path")) {
+                        evaluation = MachinePlayer.PATH_EVALUATION;
+                    } else if (value.equals("pattern")) {
+                        evaluation = MachinePlayer.PATTERN_EVALUATION;
+                    } else {
+                        throw new IllegalArgumentException("eval must be path or pattern: " + value);
+                    }
+                } else {
+                    throw new IllegalArgumentException("unknown setting: " + name);
+                }
+            }
+        }
+
+        /** Creates a player of this configuration. */
+        public MachinePlayer newPlayer(int color) {
+            MachinePlayer player = new MachinePlayer(color, depth, time);
+            player.setThreads(threads);
+            player.setParallelMode(mode);
+            player.setPondering(ponder);
+            player.setWeights(weights);
+            player.setEvaluation(evaluation);
+            if (!book) {
+                player.setOpeningBook(null);
+            }
+            return player;
+        }
+
+        /** The search depth, see MachinePlayer.setSearchDepth. */
+        int depth() {
+            return depth;
+        }
+
+        /** The time budget per move in milliseconds, 0 for none. */
+        long time() {
+            return time;
+        }
+
+        public String toString() {
+            return spec;
+        }
+    }
+
+    public Tournament(Entrant a, Entrant b) {
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     *  Plays the match and prints the report on System.out, with progress on System.err.
+     *  @throws IOException if the games cannot be recorded.
+     */
+    public void run() throws IOException {
+        final int pairs = (games + 1) / 2;
+        final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(pairs);
+        for (int i = 0; i < pairs; i++) {
+            final int pair = i;
+            tasks.add(new RecursiveAction() {
+                protected void compute() {
+                    if (!decided) {
+                        playPair(pair);
+                    }
+                }
+            });
+        }
+        if (recordFile != null) {
+            recorder = new GameRecordWriter(recordFile, true);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new RecursiveAction() {
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+            if (recorder != null) {
+                recorder.close();
+            }
+        }
+        System.out.print(report());
+    }
+
+    private void playPair(int pair) {
+        int[] opening = randomOpening(new Random(seed * 1000003L + pair));
+        Referee referee = new Referee(maxPlies);
+        for (int aColor = Board.WHITE; aColor >= Board.BLACK; aColor--) {
+            MachinePlayer playerA = a.newPlayer(aColor);
+            MachinePlayer playerB = b.newPlayer(1 - aColor);
+            Referee.Game game;
+            try {
+                game = (aColor == Board.WHITE) ? referee.play(playerA, playerB, opening)
+                                               : referee.play(playerB, playerA, opening);
+            } finally {
+                playerA.setPondering(false);  // stops the background threads
+                playerB.setPondering(false);
+                playerA.setThreads(1);        // shuts down the players' pools
+                playerB.setThreads(1);
+            }
+            record(game, aColor);
+        }
+    }
+
+    // Random legal moves; each side adds openingPlies / 2 chips or so.
+    private int[] randomOpening(Random random) {
+        Board board = new Board();
+        int[] opening = new int[openingPlies];
+        int[] moves = new int[Board.MAX_MOVES];
+        int color = Board.WHITE;
+        for (int i = 0; i < openingPlies; i++) {
+            int count = board.generateMoves(color, moves);
+            opening[i] = moves[random.nextInt(count)];
+            board.makeMove(opening[i], color);
+            color = 1 - color;
+        }
+        return opening;
+    }
+
+    private synchronized void record(Referee.Game game, int aColor) {
+        if (recorder != null) {
+            try {
+                recorder.write(game, (aColor == Board.WHITE) ? 0 : 1, (aColor == Board.WHITE) ? 1 : 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (game.winner == aColor) {
+            wins++;
+        } else if (game.winner == Referee.DRAW) {
+            draws++;
+        } else {
+            losses++;
+        }
+        for (int color = Board.BLACK; color <= Board.WHITE; color++) {
+            int side = (color == aColor) ? 0 : 1;
+            chosen[side] += game.chosen[color];
+            nanos[side] += game.nanos[color];
+            nodes[side] += game.nodes[color];
+        }
+        int played = wins + draws + losses;
+        if (sprt && !decided) {
+            double llr = logLikelihoodRatio();
+            if (llr >= Math.log((1 - SPRT_BETA) / SPRT_ALPHA) || llr <= Math.log(SPRT_BETA / (1 - SPRT_ALPHA))) {
+                decided = true;  // games not yet started are skipped
+            }
+        }
+        if (played % 10 == 0) {
+            System.err.printf("%d games: +%d =%d -%d%n", played, wins, draws, losses);
+        }
+    }
+
+    // a's expected score per game, and its variance
+    private double score() {
+        return (wins + 0.5 * draws) / (wins + draws + losses);
+    }
+
+    private double variance() {
+        double s = score();
+        int n = wins + draws + losses;
+        return (wins * (1 - s) * (1 - s) + draws * (0.5 - s) * (0.5 - s) + losses * s * s) / n;
+    }
+
+    private static double elo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    // The log-likelihood ratio of elo1 against elo0 for the games so far, in the normal
+    // approximation of the generalized SPRT.
+    private double logLikelihoodRatio() {
+        int n = wins + draws + losses;
+        double variance = variance();
+        if (variance == 0) {
+            return 0;  // all results alike so far; nothing to tell them apart yet
+        }
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return n * (s1 - s0) * (2 * score() - s0 - s1) / (2 * variance);
+    }
+
+    /** Returns the report of the games played so far. */
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        int n = wins + draws + losses;
+        sb.append(String.format("A: %s%nB: %s%n", a, b));
+        if (n == 0) {
+            return sb.append("no games played\n").toString();
+        }
+        double s = score();
+        double margin = 1.96 * Math.sqrt(variance() / n);
+        sb.append(String.format("games %d: A +%d =%d -%d, score %.1f%%%n", n, wins, draws, losses, 100 * s));
+        if (s <= 0 || s >= 1) {
+            sb.append(String.format("Elo difference: %s infinity%n", (s >= 1) ? "+" : "-"));
+        } else {
+            double low = elo(Math.max(s - margin, 1e-6));
+            double high = elo(Math.min(s + margin, 1 - 1e-6));
+            sb.append(String.format("Elo difference: %+.1f (95%%: %+.1f to %+.1f)%n", elo(s), low, high));
+        }
+        if (sprt) {
+            double llr = logLikelihoodRatio();
+            double lower = Math.log(SPRT_BETA / (1 - SPRT_ALPHA));
+            double upper = Math.log((1 - SPRT_BETA) / SPRT_ALPHA);
+            String verdict = (llr >= upper) ? "H1 accepted" : (llr <= lower) ? "H0 accepted" : "undecided";
+            sb.append(String.format("SPRT elo0=%.1f elo1=%.1f: LLR %.2f (%.2f, %.2f), %s%n",
+                                    elo0, elo1, llr, lower, upper, verdict));
+        }
+        for (int side = 0; side < 2; side++) {
+            int moves = Math.max(chosen[side], 1);
+            sb.append(String.format("%s: %.1f ms/move, %d nodes/move%n", (side == 0) ? "A" : "B",
+                                    nanos[side] / 1e6 / moves, nodes[side] / moves));
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Tournament t;
+        try {
+            List<String> entrants = new ArrayList<String>();
+            Map<String, String> options = new HashMap<String, String>();
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].startsWith("-") && i + 1 < args.length) {
+                    options.put(args[i], args[++i]);
+                } else {
+                    entrants.add(args[i]);
+                }
+            }
+            if (entrants.size() != 2) {
+                throw new IllegalArgumentException("two configurations needed");
+            }
+            t = new Tournament(new Entrant(entrants.get(0)), new Entrant(entrants.get(1)));
+            for (Map.Entry<String, String> option : options.entrySet()) {
+                String value = option.getValue();
+                if (option.getKey().equals("-games")) {
+                    t.games = Integer.parseInt(value);
+                } else if (option.getKey().equals("-threads")) {
+                    t.threads = Integer.parseInt(value);
+                } else if (option.getKey().equals("-opening")) {
+                    t.openingPlies = Integer.parseInt(value);
+                } else if (option.getKey().equals("-plies")) {
+                    t.maxPlies = Integer.parseInt(value);
+                } else if (option.getKey().equals("-seed")) {
+                    t.seed = Long.parseLong(value);
+                } else if (option.getKey().equals("-record")) {
+                    t.recordFile = new File(value);
+                } else if (option.getKey().equals("-sprt")) {
+                    String[] bounds = value.split(",");
+                    t.sprt = true;
+                    t.elo0 = Double.parseDouble(bounds[0]);
+                    t.elo1 = Double.parseDouble(bounds[1]);
+                } else {
+                    throw new IllegalArgumentException("unknown option " + option.getKey());
+                }
+            }
+            if (t.games < 1 || t.threads < 1 || t.openingPlies < 0 || t.openingPlies > 10
+                || t.maxPlies <= t.openingPlies) {
+                throw new IllegalArgumentException("option out of range");
+            }
+        } catch (RuntimeException e) {  // a bad number or setting
+            System.err.println(e.getMessage());
+            System.err.println("usage: java player.Tournament [-games N] [-threads N] [-opening N] [-plies N]"
+                               + " [-seed N] [-sprt elo0,elo1] [-record file] configA configB");
+            System.exit(2);
+            return;
+        }
+        t.run();
+    }
+
+}
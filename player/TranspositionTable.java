@@ -0,0 +1,129 @@
+/* TranspositionTable.java */
+
+package player;
+
+/**
+ *  A fixed-size table of search results indexed by the Zobrist key of a position
+ *  (see Board.hashKey).  Each slot remembers the depth a position was searched to,
+ *  whether the stored score is exact or only a bound, the score itself and the best
+ *  move found, so that a position reached again through a different move order does
+ *  not have to be searched twice.
+ *
+ *  An entry is packed into a single long:
+ *    bits  0-31  score (see Searcher for how network scores are stored)
+ *    bits 32-45  best move, packed as in PackedMove; PackedMove.NONE if there is none
+ *    bits 46-53  search depth
+ *    bits 54-55  bound type
+ *    bit  56     set for every stored entry, so that 0 means "empty"
+ *
+ *  Each slot is two adjacent longs in one array: the key XORed with the entry,
+ *  then the entry itself.  The table is shared by parallel searches without any
+ *  locking.  Two threads writing the same slot at once can leave a key word from
+ *  one write next to an entry word from the other, but then the key no longer
+ *  XORs back to the probed key and probe reports a miss instead of a wrong entry.
+ */
+public class TranspositionTable {
+
+  public static final int EXACT = 0;        // score is the true minimax value
+  public static final int LOWER_BOUND = 1;  // true value >= score (search failed high)
+  public static final int UPPER_BOUND = 2;  // true value <= score (search failed low)
+
+  public static final long NONE = 0L;       // returned by probe on a miss
+
+  private static final long USED = 1L << 56;
+
+  // slot i is at slots[2 * i] (key ^ entry) and slots[2 * i + 1] (entry)
+  private final long[] slots;
+  private final int mask;
+  // XORed into every key, see forget
+  private long salt;
+  private long generation;
+
+  /**
+   *  Creates a table with 2^sizeBits slots.
+   *  @param sizeBits log2 of the number of slots.
+   */
+  public TranspositionTable(int sizeBits) {
+    slots = new long[2 << sizeBits];
+    mask = (1 << sizeBits) - 1;
+  }
+
+  /**
+   *  Looks up a position.
+   *  @param key the Zobrist key of the position.
+   *  @return the packed entry, or NONE if the position is not in the table.
+   */
+  public long probe(long key) {
+    key ^= salt;
+    int i = ((int) key & mask) << 1;
+    long entry = slots[i + 1];
+    if ((slots[i] ^ entry) != key) {
+      return NONE;
+    }
+    return entry;
+  }
+
+  /**
+   *  Records the result of searching a position.  A slot already holding the same
+   *  position is only overwritten by a search at least as deep; a different
+   *  position is always replaced.
+   *  @param key the Zobrist key of the position.
+   *  @param depth how many plies the position was searched to.
+   *  @param bound EXACT, LOWER_BOUND or UPPER_BOUND.
+   *  @param score the score the search returned.
+   *  @param best the best move found, or PackedMove.NONE if there was none.
+   */
+  public void store(long key, int depth, int bound, int score, int best) {
+    key ^= salt;
+    int i = ((int) key & mask) << 1;
+    long entry = (score & 0xFFFFFFFFL)
+                 | ((long) best << 32)
+                 | ((long) depth << 46)
+                 | ((long) bound << 54)
+                 | USED;
+    long old = slots[i + 1];
+    if ((slots[i] ^ old) == key && depth(old) > depth) {
+      return;
+    }
+    slots[i] = key ^ entry;
+    slots[i + 1] = entry;
+  }
+
+  /** Empties the table.  Must not be called while a search is using it. */
+  public void clear() {
+    java.util.Arrays.fill(slots, 0L);
+  }
+
+  /**
+   *  Makes every entry stored so far unreachable, as clear does, but in constant
+   *  time: the keys are XORed with a new salt from now on, so an old entry only
+   *  matches a probe by the same chance as an entry of another position would.  The
+   *  old entries are overwritten as new positions are stored.  Must not be called
+   *  while a search is using the table.
+   */
+  public void forget() {
+    generation++;
+    salt = generation * 0x9E3779B97F4A7C15L;  // spreads the generations over all the key bits
+  }
+
+  public static int score(long entry) {
+    return (int) entry;
+  }
+
+  public static int depth(long entry) {
+    return (int) (entry >>> 46) & 0xFF;
+  }
+
+  public static int bound(long entry) {
+    return (int) (entry >>> 54) & 0x3;
+  }
+
+  /**
+   *  Returns the best move stored in an entry.
+   *  @return the move packed as in PackedMove, or PackedMove.NONE if the entry has none.
+   */
+  public static int move(long entry) {
+    return (int) (entry >>> 32) & 0x3FFF;
+  }
+
+}
@@ -0,0 +1,267 @@
+/* Tuner.java */
+
+package player;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *  Tunes the evaluation weights (see EvaluationWeights) on finished games, in the
+ *  manner of Texel's tuning method: the evaluation of a position, put through a
+ *  logistic function, should predict the result of the game it was played in.
+ *
+ *  The positions come from game record files (see GameRecordReader).  Every
+ *  position after the opening plies is used, except those where a network is
+ *  complete or the side to move completes one next move, which the search scores
+ *  without the evaluation.  Only the features of a position are kept, so memory
+ *  grows by FEATURES floats and one byte per position.
+ *
+ *  First the scale K of the logistic function is fitted to the current weights,
+ *  which fixes the units of the evaluation; then the weights are moved down the
+ *  gradient of the mean squared prediction error, with a step that grows while
+ *  the error falls and shrinks when it rises.  The error and its gradient are
+ *  sums over every position, split across a fork/join pool.
+ *
+ *  Usage: java player.Tuner weightsFile games... [-skip N] [-iterations N] [-threads N]
+ *  The weights file is read first if it exists, and then written with the result.
+ */
+public class Tuner {
+
+    private static final int FEATURES = EvaluationWeights.FEATURES;
+    // positions a fork/join task sums up without splitting further
+    private static final int LEAF_POSITIONS = 1 << 14;
+
+    private final ForkJoinPool pool;
+    private float[] features = new float[FEATURES * 1024];  // position i at [i * FEATURES, (i + 1) * FEATURES)
+    private byte[] results = new byte[1024];                // 2 white won, 1 draw, 0 black won
+    private int positions;
+
+    public Tuner(int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     *  Adds the positions of every game of a game record file.
+     *  @param skip the opening plies of each game that are left out.
+     */
+    public void addGames(File file, int skip) throws IOException {
+        GameRecordReader reader = new GameRecordReader(file);
+        double[] f = new double[FEATURES];
+        try {
+            while (reader.next()) {
+                int result = (reader.winner() == Board.WHITE) ? 2 : (reader.winner() == Board.BLACK) ? 0 : 1;
+                Board board = new Board();
+                int color = Board.WHITE;
+                for (int ply = 0; ply < reader.plies(); ply++) {
+                    board.makeMove(reader.move(ply), color);
+                    color = 1 - color;
+                    if (ply + 1 < skip || board.hasNetwork(Board.WHITE) || board.hasNetwork(Board.BLACK)
+                        || board.winningMoves(color, null) > 0) {
+                        continue;
+                    }
+                    EvaluationWeights.features(board, f);
+                    add(f, result);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void add(double[] f, int result) {
+        if (positions == results.length) {
+            results = Arrays.copyOf(results, 2 * positions);
+            features = Arrays.copyOf(features, 2 * positions * FEATURES);
+        }
+        for (int j = 0; j < FEATURES; j++) {
+            features[positions * FEATURES + j] = (float) f[j];
+        }
+        results[positions++] = (byte) result;
+    }
+
+    /** Returns the number of positions added. */
+    public int positions() {
+        return positions;
+    }
+
+    /**
+     *  Finds the scale K that makes the given weights predict the results best.
+     *  @return K, so that white is expected to score 1 / (1 + 10^(-K * eval / 400)).
+     */
+    public double fitScale(double[] weights) {
+        double low = 0.01;
+        double high = 100.0;
+        for (int i = 0; i < 60; i++) {  // golden-section search on log K
+            double a = low * Math.pow(high / low, 0.382);
+            double b = low * Math.pow(high / low, 0.618);
+            if (error(weights, a) < error(weights, b)) {
+                high = b;
+            } else {
+                low = a;
+            }
+        }
+        return Math.sqrt(low * high);
+    }
+
+    /**
+     *  Moves the weights down the gradient of the prediction error.
+     *  @param weights the starting weights, changed in place.
+     *  @param k the scale, see fitScale.
+     *  @param iterations the number of gradient steps.
+     *  @return the error of the final weights.
+     */
+    public double tune(double[] weights, double k, int iterations) {
+        double error = error(weights, k);
+        double step = 1.0;
+        double[] trial = new double[FEATURES];
+        for (int i = 0; i < iterations; i++) {
+            double[] gradient = sums(weights, k, true);
+            double norm = 0;
+            for (int j = 0; j < FEATURES; j++) {
+                norm += gradient[1 + j] * gradient[1 + j];
+            }
+            norm = Math.sqrt(norm);
+            if (norm == 0) {
+                break;
+            }
+            // step is the distance moved in weight space
+            while (step > 1e-6) {
+                for (int j = 0; j < FEATURES; j++) {
+                    trial[j] = weights[j] - step * gradient[1 + j] / norm;
+                }
+                double e = error(trial, k);
+                if (e < error) {
+                    System.arraycopy(trial, 0, weights, 0, FEATURES);
+                    error = e;
+                    step *= 1.5;
+                    break;
+                }
+                step /= 2;
+            }
+            if (step <= 1e-6) {
+                break;  // no step lowers the error: a minimum
+            }
+            if (i % 10 == 0) {
+                System.err.printf("iteration %d: error %.6f, weights %s%n", i, error, Arrays.toString(weights));
+            }
+        }
+        return error;
+    }
+
+    /** The mean squared error of the predicted results. */
+    public double error(double[] weights, double k) {
+        return sums(weights, k, false)[0];
+    }
+
+    // [mean squared error, its gradient by each weight (if wanted)]
+    private double[] sums(double[] weights, double k, boolean gradient) {
+        double[] s = pool.invoke(new Sum(weights, k, gradient, 0, positions));
+        for (int j = 0; j < s.length; j++) {
+            s[j] /= positions;
+        }
+        return s;
+    }
+
+    private class Sum extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] weights;
+        private final double k;
+        private final boolean gradient;
+        private final int from;
+        private final int to;
+
+        Sum(double[] weights, double k, boolean gradient, int from, int to) {
+            this.weights = weights;
+            this.k = k;
+            this.gradient = gradient;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected double[] compute() {
+            if (to - from > LEAF_POSITIONS) {
+                int middle = (from + to) >>> 1;
+                Sum left = new Sum(weights, k, gradient, from, middle);
+                left.fork();
+                double[] s = new Sum(weights, k, gradient, middle, to).compute();
+                double[] l = left.join();
+                for (int j = 0; j < s.length; j++) {
+                    s[j] += l[j];
+                }
+                return s;
+            }
+            double[] s = new double[gradient ? 1 + FEATURES : 1];
+            double c = k * Math.log(10) / 400;
+            for (int i = from; i < to; i++) {
+                int base = i * FEATURES;
+                double eval = 0;
+                for (int j = 0; j < FEATURES; j++) {
+                    eval += weights[j] * features[base + j];
+                }
+                double predicted = 1 / (1 + Math.exp(-c * eval));
+                double diff = results[i] * 0.5 - predicted;
+                s[0] += diff * diff;
+                if (gradient) {
+                    double d = -2 * diff * predicted * (1 - predicted) * c;
+                    for (int j = 0; j < FEATURES; j++) {
+                        s[1 + j] += d * features[base + j];
+                    }
+                }
+            }
+            return s;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> files = new ArrayList<String>();
+        int skip = 4;
+        int iterations = 200;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-skip") && i + 1 < args.length) {
+                    skip = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-iterations") && i + 1 < args.length) {
+                    iterations = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].startsWith("-")) {
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+                } else {
+                    files.add(args[i]);
+                }
+            }
+            if (files.size() < 2 || threads < 1) {
+                throw new IllegalArgumentException("a weights file and game files needed");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: java player.Tuner weightsFile games... [-skip N] [-iterations N] [-threads N]");
+            System.exit(2);
+        }
+
+        File weightsFile = new File(files.get(0));
+        EvaluationWeights start = weightsFile.exists() ? EvaluationWeights.load(weightsFile) : new EvaluationWeights();
+        Tuner tuner = new Tuner(threads);
+        for (String name : files.subList(1, files.size())) {
+            tuner.addGames(new File(name), skip);
+        }
+        if (tuner.positions() == 0) {
+            System.err.println("no positions to tune on");
+            System.exit(1);
+        }
+        double[] weights = start.toArray();
+        double k = tuner.fitScale(weights);
+        double before = tuner.error(weights, k);
+        System.err.printf("%d positions, K %.4f, error %.6f%n", tuner.positions(), k, before);
+        double after = tuner.tune(weights, k, iterations);
+        EvaluationWeights.fromArray(weights).save(weightsFile);
+        System.err.printf("error %.6f -> %.6f, weights %s written to %s%n",
+                          before, after, Arrays.toString(weights), weightsFile);
+        tuner.pool.shutdown();
+    }
+
+}